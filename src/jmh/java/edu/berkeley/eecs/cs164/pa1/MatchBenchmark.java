@@ -0,0 +1,67 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single full match with each simulation strategy. Run with -prof gc to see
+ * the allocation rate per match as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchBenchmark {
+    @Param({"WORST_CASE", "DEEP_NESTING", "WIDE_ALTERNATION"})
+    public Shapes shape;
+
+    @Param({"16", "256", "1024"})
+    public int length;
+
+    private String input;
+    private NFASimulator simulator;
+    private NFASimulator cached;
+    private NFAMatcher matcher;
+    private DFA dfa;
+
+    @Setup
+    public void setUp() {
+        Automaton nfa = RegexParser.parse(shape.pattern(length));
+        input = shape.input(length);
+        simulator = new NFASimulator(nfa);
+        cached = new NFASimulator(nfa, LazyDFA.DEFAULT_MAX_STATES);
+        matcher = simulator.matcher();
+        dfa = DFA.determinize(nfa, 1 << 16).minimize();
+        if (!simulator.matches(input)) {
+            throw new IllegalStateException(shape + " does not match its own input");
+        }
+    }
+
+    @Benchmark
+    public boolean nfa() {
+        return simulator.matches(input);
+    }
+
+    @Benchmark
+    public boolean lazyDfa() {
+        return cached.matches(input);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return simulator.matchesCompiled(input);
+    }
+
+    @Benchmark
+    public boolean matcher() {
+        return matcher.matches(input);
+    }
+
+    @Benchmark
+    public boolean minimalDfa() {
+        return dfa.matches(input);
+    }
+}
@@ -0,0 +1,63 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parallel search against the sequential matcher over a large input
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+    @Param({"1048576", "16777216"})
+    public int length;
+
+    private String text;
+    private String lines;
+    private ParallelSearch search;
+    private NFAMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        Automaton nfa = RegexParser.parse("((a|b)*c)+");
+        text = Shapes.repeat("abbac", length / 5);
+        lines = Shapes.repeat("abbac\nbad\n", length / 10);
+        search = new ParallelSearch(nfa);
+        matcher = new NFASimulator(nfa).matcher();
+    }
+
+    @Benchmark
+    public boolean sequentialMatch() {
+        return matcher.matches(text);
+    }
+
+    @Benchmark
+    public boolean parallelMatch() {
+        return search.matches(text);
+    }
+
+    @Benchmark
+    public int sequentialLines() {
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= lines.length(); i++) {
+            if (i == lines.length() || lines.charAt(i) == '\n') {
+                if (i > start || i < lines.length()) {
+                    count += matcher.matches(lines.subSequence(start, i)) ? 1 : 0;
+                }
+                start = i + 1;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int parallelLines() {
+        return search.findLines(lines).length;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of turning a pattern into an NFA, and of the later compile steps
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Param({"WORST_CASE", "DEEP_NESTING", "WIDE_ALTERNATION"})
+    public Shapes shape;
+
+    @Param({"16", "256"})
+    public int length;
+
+    private String pattern;
+    private Automaton nfa;
+
+    @Setup
+    public void setUp() {
+        pattern = shape.pattern(length);
+        nfa = RegexParser.parse(pattern);
+    }
+
+    @Benchmark
+    public Automaton parse() {
+        return RegexParser.parse(pattern);
+    }
+
+    @Benchmark
+    public CompiledAutomaton compile() {
+        return CompiledAutomaton.compile(nfa);
+    }
+
+    @Benchmark
+    public Automaton optimize() {
+        return NFAOptimizer.optimize(nfa);
+    }
+}
@@ -0,0 +1,73 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Pattern families the benchmarks are run over, each with an input of a given length
+ * that the pattern accepts.
+ */
+public enum Shapes {
+    /**
+     * a?^n a^n, the family from NFASimulatorTest.testWorstCasePerformance
+     */
+    WORST_CASE {
+        String pattern(int length) {
+            return repeat("a?", length / 2) + repeat("a", length / 2);
+        }
+
+        String input(int length) {
+            return repeat("a", length / 2 * 2);
+        }
+    },
+
+    /**
+     * ((((ab)+)+)+)+ nested to a fixed depth
+     */
+    DEEP_NESTING {
+        String pattern(int length) {
+            return repeat("(", DEPTH) + "ab" + repeat(")+", DEPTH);
+        }
+
+        String input(int length) {
+            return repeat("ab", length / 2);
+        }
+    },
+
+    /**
+     * (w1|w2|...|wk)+ over a fixed number of distinct three letter words
+     */
+    WIDE_ALTERNATION {
+        String pattern(int length) {
+            StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < WORDS; i++) {
+                builder.append(i == 0 ? "" : "|").append(word(i));
+            }
+            return builder.append(")+").toString();
+        }
+
+        String input(int length) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; builder.length() + 3 <= Math.max(length, 3); i++) {
+                builder.append(word(i * 7 % WORDS));
+            }
+            return builder.toString();
+        }
+    };
+
+    static final int DEPTH = 32;
+    static final int WORDS = 256;
+
+    abstract String pattern(int length);
+
+    abstract String input(int length);
+
+    static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    private static String word(int i) {
+        return new String(new char[]{(char) ('a' + i % 26), (char) ('a' + i / 26 % 26), (char) ('a' + i / 676)});
+    }
+}
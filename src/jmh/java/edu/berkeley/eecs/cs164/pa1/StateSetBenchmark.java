@@ -0,0 +1,59 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the state set operations of the object-based simulators on large
+ * alternations, whose start closure holds a state per alternative. Every parse, closure
+ * and lazy DFA lookup hashes and compares AutomatonStates and sets of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateSetBenchmark {
+    @Param({"64", "1024", "8192"})
+    public int alternatives;
+
+    private String pattern;
+    private String input;
+    private Automaton nfa;
+    private NFASimulator simulator;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < alternatives; i++) {
+            if (i > 0) {
+                builder.append('|');
+            }
+            builder.append('w').append(Integer.toString(i, 26));
+        }
+        pattern = builder.toString();
+        input = "w" + Integer.toString(alternatives - 1, 26);
+        nfa = RegexParser.parse(pattern);
+        simulator = new NFASimulator(nfa);
+        if (!simulator.matches(input)) {
+            throw new IllegalStateException("Alternation does not match its own input");
+        }
+    }
+
+    @Benchmark
+    public Automaton parse() {
+        return RegexParser.parse(pattern);
+    }
+
+    @Benchmark
+    public boolean nfa() {
+        return simulator.matches(input);
+    }
+
+    @Benchmark
+    public boolean lazyDfaCold() {
+        return new LazyDFA(nfa, LazyDFA.DEFAULT_MAX_STATES).matches(input);
+    }
+}
@@ -1,17 +1,20 @@
 package edu.berkeley.eecs.cs164.pa1;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * This class represents a complete NFA, with a single starting
  * state and a single ending state. It roughly corresponds to the
  * Frag struct from Russ Cox's page.
+ *
+ * A frozen automaton (see {@link #freeze()}) can no longer change, and since all of its
+ * states are frozen before it is constructed it is safe to share between threads however
+ * it is published.
  */
 public class Automaton {
     private final AutomatonState start;
     private final AutomatonState out;
+    private final boolean frozen;
 
     /**
      * Create a new Automaton from a given start and output state
@@ -20,8 +23,55 @@ public class Automaton {
      * @param out   Output / final state for the automaton
      */
     public Automaton(AutomatonState start, AutomatonState out) {
+        this(start, out, false);
+    }
+
+    private Automaton(AutomatonState start, AutomatonState out, boolean frozen) {
         this.start = start;
         this.out = out;
+        this.frozen = frozen;
+    }
+
+    /**
+     * Freezes every state reachable from the start state
+     *
+     * @return a frozen automaton with the same start and output states
+     */
+    public Automaton freeze() {
+        if (frozen) {
+            return this;
+        }
+        Set<AutomatonState> visited = new HashSet<AutomatonState>();
+        Deque<AutomatonState> pending = new ArrayDeque<AutomatonState>();
+        pending.push(start);
+        visited.add(start);
+        while (!pending.isEmpty()) {
+            AutomatonState state = pending.pop();
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        pending.push(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        pending.push(target);
+                    }
+                }
+            }
+            state.freeze();
+        }
+        out.freeze();
+        return new Automaton(start, out, true);
+    }
+
+    /**
+     * @return true if no state of this automaton can change any more
+     */
+    public boolean isFrozen() {
+        return frozen;
     }
 
     public AutomatonState getOut() {
@@ -56,6 +106,13 @@ public class Automaton {
                     builder.append(String.format("\t%s -> %s [label=%s];%n", current, target, label));
                 }
             }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : current.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    String label = String.format("\"%s\"", entry.getKey()).replace("\\", "\\\\");
+                    printTraversal(target, visited, builder);
+                    builder.append(String.format("\t%s -> %s [label=%s];%n", current, target, label));
+                }
+            }
         }
     }
 }
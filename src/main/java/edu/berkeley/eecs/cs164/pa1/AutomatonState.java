@@ -1,18 +1,30 @@
 package edu.berkeley.eecs.cs164.pa1;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a single state in an NFA, and keeps track of its outgoing
  * transitions. Empty transitions can be added or requested using null as a character.
+ * Transitions on a character class are kept apart, labelled with their {@link CharRanges}.
+ *
+ * Transitions on the same label keep the order they were added in, which
+ * {@link CaptureMatcher} takes as their priority. A state may carry a tag: the number of
+ * the capture slot that records the input position whenever a match passes through it.
+ *
+ * Ids are handed out atomically, so states can be created on any number of threads at
+ * once. Once a state is frozen its transitions can no longer change.
  */
 public class AutomatonState {
-    private static int maxId = 0;
-    private final Map<Character, Set<AutomatonState>> transitions = new HashMap<Character, Set<AutomatonState>>();
+    private static final AtomicInteger maxId = new AtomicInteger();
+    private Map<Character, Set<AutomatonState>> transitions = new HashMap<Character, Set<AutomatonState>>();
+    private Map<CharRanges, Set<AutomatonState>> classTransitions = new HashMap<CharRanges, Set<AutomatonState>>();
+    private boolean frozen;
+    private int tag = -1;
     private final int myId;
 
     public AutomatonState() {
-        myId = ++maxId;
+        myId = maxId.incrementAndGet();
     }
 
     /**
@@ -21,9 +33,10 @@ public class AutomatonState {
      * @param state the state to transition to
      */
     public void addEpsilonTransition(AutomatonState state) {
+        checkNotFrozen();
         Set<AutomatonState> automatonStates = transitions.get(null);
         if (automatonStates == null) {
-            automatonStates = new HashSet<AutomatonState>();
+            automatonStates = new LinkedHashSet<AutomatonState>();
         }
         automatonStates.add(state);
         transitions.put(null, automatonStates);
@@ -36,16 +49,34 @@ public class AutomatonState {
      * @param state the state to transition to
      */
     public void addTransition(char ch, AutomatonState state) {
+        checkNotFrozen();
         Set<AutomatonState> automatonStates = transitions.get(ch);
         if (automatonStates == null) {
-            automatonStates = new HashSet<AutomatonState>();
+            automatonStates = new LinkedHashSet<AutomatonState>();
         }
         automatonStates.add(state);
         transitions.put(ch, automatonStates);
     }
 
     /**
-     * Gets the set of states reachable from this state via the given character
+     * Adds a transition on any character of a class
+     *
+     * @param chars the characters to transition on
+     * @param state the state to transition to
+     */
+    public void addTransition(CharRanges chars, AutomatonState state) {
+        checkNotFrozen();
+        Set<AutomatonState> automatonStates = classTransitions.get(chars);
+        if (automatonStates == null) {
+            automatonStates = new LinkedHashSet<AutomatonState>();
+        }
+        automatonStates.add(state);
+        classTransitions.put(chars, automatonStates);
+    }
+
+    /**
+     * Gets the set of states reachable from this state via the given character, either
+     * on a transition labelled with it or on a class containing it
      *
      * @param ch the character to follow
      * @return set of states
@@ -55,7 +86,19 @@ public class AutomatonState {
         if (states == null) {
             states = Collections.emptySet();
         }
-        return states;
+        if (classTransitions.isEmpty()) {
+            return states;
+        }
+        Set<AutomatonState> merged = null;
+        for (Map.Entry<CharRanges, Set<AutomatonState>> entry : classTransitions.entrySet()) {
+            if (entry.getKey().contains(ch)) {
+                if (merged == null) {
+                    merged = new HashSet<AutomatonState>(states);
+                }
+                merged.addAll(entry.getValue());
+            }
+        }
+        return merged == null ? states : merged;
     }
 
     /**
@@ -75,11 +118,71 @@ public class AutomatonState {
         return transitions.entrySet();
     }
 
+    /**
+     * @return the transitions on character classes, keyed by class
+     */
+    public Set<Map.Entry<CharRanges, Set<AutomatonState>>> getClassTransitions() {
+        return classTransitions.entrySet();
+    }
+
+    /**
+     * Tags the state with a capture slot
+     *
+     * @param tag the slot recording the position a match passes through this state
+     */
+    public void setTag(int tag) {
+        checkNotFrozen();
+        this.tag = tag;
+    }
+
+    /**
+     * @return the capture slot of this state, or -1 if it has none
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * Makes the transitions of this state unmodifiable. Adding a transition afterwards
+     * throws an IllegalStateException.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        Map<Character, Set<AutomatonState>> copy = new HashMap<Character, Set<AutomatonState>>();
+        for (Map.Entry<Character, Set<AutomatonState>> entry : transitions.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        transitions = Collections.unmodifiableMap(copy);
+        Map<CharRanges, Set<AutomatonState>> classCopy = new HashMap<CharRanges, Set<AutomatonState>>();
+        for (Map.Entry<CharRanges, Set<AutomatonState>> entry : classTransitions.entrySet()) {
+            classCopy.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        classTransitions = Collections.unmodifiableMap(classCopy);
+        frozen = true;
+    }
+
+    /**
+     * @return true if the transitions of this state can no longer change
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("State " + this + " is frozen");
+        }
+    }
+
+    /**
+     * States are keyed by their id alone, so hashing is constant time and a state's hash
+     * does not change as transitions are added to it.
+     */
     @Override
     public int hashCode() {
-        int result = transitions.keySet().hashCode();
-        result = 31 * result + getMyId();
-        return result;
+        return myId;
     }
 
     /**
@@ -96,9 +199,7 @@ public class AutomatonState {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        AutomatonState that = (AutomatonState) o;
-
-        return transitions.equals(that.transitions);
+        return myId == ((AutomatonState) o).myId;
     }
 
     @Override
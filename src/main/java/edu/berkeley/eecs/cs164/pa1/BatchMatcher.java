@@ -0,0 +1,151 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class matches one NFA against many short inputs at once. Per input, matching
+ * only costs the characters stepped: every thread keeps one {@link NFAMatcher}, whose
+ * state sets and precomputed start closure are reused for every input it sees.
+ *
+ * Inputs are given either as a list or packed into one char array with an offsets
+ * array, where input i is chars[offsets[i], offsets[i + 1]). Results come back as a
+ * BitSet with bit i set if input i matched.
+ *
+ * A matcher given a {@link ForkJoinPool} splits batches into runs of at least batchSize
+ * inputs and matches them in parallel. Runs are whole multiples of 64 inputs, so each
+ * writes its own words of the result. Instances can be shared between threads.
+ */
+public class BatchMatcher {
+    /**
+     * Default number of inputs matched by one task
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private final CompiledAutomaton program;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final ThreadLocal<NFAMatcher> matchers = new ThreadLocal<NFAMatcher>() {
+        @Override
+        protected NFAMatcher initialValue() {
+            return new NFAMatcher(program);
+        }
+    };
+
+    /**
+     * Create a new batch matcher that runs on the calling thread
+     *
+     * @param nfa the nfa to match with
+     */
+    public BatchMatcher(Automaton nfa) {
+        this(nfa, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a new batch matcher that splits batches across a pool
+     *
+     * @param nfa       the nfa to match with
+     * @param pool      the pool to run tasks on, or null to run on the calling thread
+     * @param batchSize the least number of inputs matched by one task
+     */
+    public BatchMatcher(Automaton nfa, ForkJoinPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.program = CompiledAutomaton.compile(nfa);
+        this.pool = pool;
+        // Round up to whole words of the result.
+        this.batchSize = (batchSize + 63) & ~63;
+    }
+
+    /**
+     * Matches every input in a list
+     *
+     * @param texts the inputs to match
+     * @return a set holding the indices of the inputs accepted by the NFA
+     */
+    public BitSet matches(List<? extends CharSequence> texts) {
+        final List<? extends CharSequence> inputs =
+                texts instanceof RandomAccess ? texts : new ArrayList<CharSequence>(texts);
+        return run(inputs.size(), new Inputs() {
+            public boolean matches(NFAMatcher matcher, int i) {
+                return matcher.matches(inputs.get(i));
+            }
+        });
+    }
+
+    /**
+     * Matches every input packed into a char array
+     *
+     * @param chars   the characters of all inputs, back to back
+     * @param offsets offsets.length - 1 inputs, input i being chars[offsets[i], offsets[i + 1])
+     * @return a set holding the indices of the inputs accepted by the NFA
+     */
+    public BitSet matches(final char[] chars, final int[] offsets) {
+        if (offsets.length == 0) {
+            return new BitSet();
+        }
+        return run(offsets.length - 1, new Inputs() {
+            public boolean matches(NFAMatcher matcher, int i) {
+                return matcher.matches(chars, offsets[i], offsets[i + 1] - offsets[i]);
+            }
+        });
+    }
+
+    private BitSet run(int count, Inputs inputs) {
+        long[] words = new long[(count + 63) >>> 6];
+        if (pool == null || count <= batchSize) {
+            match(inputs, words, 0, count);
+        } else {
+            pool.invoke(new BatchTask(inputs, words, 0, count));
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private void match(Inputs inputs, long[] words, int from, int to) {
+        NFAMatcher matcher = matchers.get();
+        for (int i = from; i < to; i++) {
+            if (inputs.matches(matcher, i)) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Random access to the inputs of a batch
+     */
+    private interface Inputs {
+        boolean matches(NFAMatcher matcher, int i);
+    }
+
+    /**
+     * Matches inputs [from, to), splitting on word boundaries down to the batch size
+     */
+    private class BatchTask extends RecursiveAction {
+        private final Inputs inputs;
+        private final long[] words;
+        private final int from;
+        private final int to;
+
+        BatchTask(Inputs inputs, long[] words, int from, int to) {
+            this.inputs = inputs;
+            this.words = words;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                match(inputs, words, from, to);
+                return;
+            }
+            int mid = from + Math.max(64, ((to - from) >>> 1) & ~63);
+            invokeAll(new BatchTask(inputs, words, from, mid), new BatchTask(inputs, words, mid, to));
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class matches an NFA tagged by {@link RegexParser#parseCapturing(String)} and
+ * reports the span of every capture group, so callers never have to take a matched text
+ * apart again.
+ *
+ * Matching is a Pike VM: each thread carries its own slots, copied into preallocated
+ * arrays indexed by state, and a tagged state writes the current position into its
+ * slot. Threads are kept in priority order, the order in which epsilon edges were added
+ * by the parser, so where a text can be split up between groups in more than one way
+ * the groups come out as a backtracking matcher would give them: greedy repetitions take
+ * as much as they can and alternatives are tried from the left.
+ *
+ * Many patterns are one-pass: wherever the match is, the next character decides which
+ * edge it takes, as in (\d+)-(\d+). For those {@link #match(CharSequence)} runs a
+ * single deterministic thread over a precomputed table instead, applying the tags of
+ * the one path each character selects.
+ *
+ * Automata that went through {@link NFAOptimizer} have lost their tags. Matchers hold
+ * mutable scratch state and are not thread-safe; keep one per thread.
+ */
+public class CaptureMatcher {
+    private final CompiledAutomaton program;
+    private final int slotCount;
+    private final OnePass onePass;
+    private final int[] stack;
+    private final int[] slots;
+    private final int[] best;
+    private SparseSet current;
+    private SparseSet next;
+    private int[] currentSlots;
+    private int[] nextSlots;
+
+    /**
+     * Create a new matcher from a given tagged NFA structure
+     *
+     * @param nfa the nfa to match with
+     */
+    public CaptureMatcher(Automaton nfa) {
+        this(nfa, true);
+    }
+
+    /**
+     * @param allowOnePass false to always run the Pike VM
+     */
+    CaptureMatcher(Automaton nfa, boolean allowOnePass) {
+        this.program = CompiledAutomaton.compile(nfa);
+        this.slotCount = 2 * (program.getGroupCount() + 1);
+        int n = program.stateCount;
+        // Each state is expanded once per closure, pushing one restore and its epsilon edges.
+        this.stack = new int[2 * (n + program.getEpsilonEdgeCount() + 1)];
+        this.slots = new int[slotCount];
+        this.best = new int[slotCount];
+        this.current = new SparseSet(n);
+        this.next = new SparseSet(n);
+        this.currentSlots = new int[n * slotCount];
+        this.nextSlots = new int[n * slotCount];
+        this.onePass = allowOnePass ? OnePass.build(program) : null;
+    }
+
+    /**
+     * @return the number of capture groups, not counting the whole match
+     */
+    public int getGroupCount() {
+        return slotCount / 2 - 1;
+    }
+
+    /**
+     * @return true if the pattern is one-pass and whole-text matches skip the Pike VM
+     */
+    public boolean isOnePass() {
+        return onePass != null;
+    }
+
+    /**
+     * Matches the whole of a text
+     *
+     * @param text the text to try matching
+     * @return the spans of the match and its groups, or null if the text does not match
+     */
+    public GroupMatch match(CharSequence text) {
+        if (onePass != null) {
+            return onePass.match(text, slots);
+        }
+        Arrays.fill(slots, -1);
+        slots[0] = 0;
+        current.clear();
+        addThread(current, currentSlots, program.start, 0);
+        for (int i = 0; i < text.length(); i++) {
+            if (current.isEmpty()) {
+                return null;
+            }
+            step(text.charAt(i), i + 1);
+        }
+        if (program.accept < 0 || !current.contains(program.accept)) {
+            return null;
+        }
+        return result(currentSlots, program.accept, text.length());
+    }
+
+    /**
+     * Finds the leftmost-longest match in a text at or after an index, as
+     * {@link NFAMatcher#find(CharSequence, int)} does, along with the spans of its groups
+     *
+     * @param text the text to search
+     * @param from the index to start searching at
+     * @return the spans of the match and its groups, or null if there is none
+     */
+    public GroupMatch find(CharSequence text, int from) {
+        CompiledAutomaton p = program;
+        current.clear();
+        boolean matched = false;
+        for (int position = from; ; position++) {
+            if (!matched) {
+                // The newest thread has the lowest priority, so threads stay ordered by start.
+                Arrays.fill(slots, -1);
+                slots[0] = position;
+                addThread(current, currentSlots, p.start, position);
+            }
+            if (p.accept >= 0 && current.contains(p.accept)) {
+                int start = currentSlots[p.accept * slotCount];
+                System.arraycopy(currentSlots, p.accept * slotCount, best, 0, slotCount);
+                best[1] = position;
+                matched = true;
+                // Threads starting after this match can only find matches further right.
+                int keep = 0;
+                while (keep < current.size() && currentSlots[current.get(keep) * slotCount] <= start) {
+                    keep++;
+                }
+                current.truncate(keep);
+            }
+            if (position == text.length() || (current.isEmpty() && matched)) {
+                break;
+            }
+            step(text.charAt(position), position + 1);
+        }
+        return matched ? new GroupMatch(best.clone()) : null;
+    }
+
+    /**
+     * Finds every non-overlapping leftmost-longest match in a text. Each search resumes
+     * where the previous match ended, or one character later after an empty match.
+     *
+     * @param text the text to search
+     * @return the spans of each match and its groups, in order
+     */
+    public List<GroupMatch> findAll(CharSequence text) {
+        List<GroupMatch> matches = new ArrayList<GroupMatch>();
+        int from = 0;
+        while (from <= text.length()) {
+            GroupMatch match = find(text, from);
+            if (match == null) {
+                break;
+            }
+            matches.add(match);
+            from = match.getEnd(0) > match.getStart(0) ? match.getEnd(0) : match.getEnd(0) + 1;
+        }
+        return matches;
+    }
+
+    private GroupMatch result(int[] threadSlots, int state, int end) {
+        int[] result = Arrays.copyOfRange(threadSlots, state * slotCount, (state + 1) * slotCount);
+        result[1] = end;
+        return new GroupMatch(result);
+    }
+
+    /**
+     * Moves every thread across the edges whose range holds ch, in priority order, so
+     * the first thread to reach a state keeps it.
+     */
+    private void step(char ch, int position) {
+        CompiledAutomaton p = program;
+        next.clear();
+        for (int i = 0; i < current.size(); i++) {
+            int s = current.get(i);
+            boolean loaded = false;
+            for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                if (p.edgeLo[e] <= ch && ch <= p.edgeHi[e]) {
+                    if (!loaded) {
+                        System.arraycopy(currentSlots, s * slotCount, slots, 0, slotCount);
+                        loaded = true;
+                    }
+                    addThread(next, nextSlots, p.edgeTarget[e], position);
+                }
+            }
+        }
+        SparseSet set = current;
+        current = next;
+        next = set;
+        int[] threadSlots = currentSlots;
+        currentSlots = nextSlots;
+        nextSlots = threadSlots;
+    }
+
+    /**
+     * Adds the closure of a state to a set in priority order, giving every state added a
+     * copy of {@link #slots} as updated by the tags on the way to it. Tags are undone on
+     * the way back, so slots is unchanged on return.
+     */
+    private void addThread(SparseSet set, int[] setSlots, int state, int position) {
+        CompiledAutomaton p = program;
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int s = stack[--top];
+            if (s < 0) {
+                // A restore entry: the slot, encoded below zero, under its old value.
+                slots[-s - 1] = stack[--top];
+                continue;
+            }
+            if (!p.canReachAccept(s) || !set.add(s)) {
+                continue;
+            }
+            int tag = p.tags[s];
+            if (tag >= 0 && tag < slotCount) {
+                stack[top++] = slots[tag];
+                stack[top++] = -tag - 1;
+                slots[tag] = position;
+            }
+            System.arraycopy(slots, 0, setSlots, s * slotCount, slotCount);
+            for (int i = p.epsStart[s + 1] - 1; i >= p.epsStart[s]; i--) {
+                stack[top++] = p.epsTarget[i];
+            }
+        }
+    }
+
+    /**
+     * The tables of a one-pass pattern. A node is the start state or the target of an
+     * edge; from each node the epsilon paths lead to edges with disjoint ranges and at
+     * most once to the accept state, so one thread suffices and each edge knows the tags
+     * on the path to it.
+     */
+    private static final class OnePass {
+        private final int[] nodeEdges;
+        private final char[] edgeLo;
+        private final char[] edgeHi;
+        private final int[] edgeTarget;
+        private final int[][] edgeTags;
+        private final int[][] acceptTags;
+
+        private OnePass(int[] nodeEdges, char[] edgeLo, char[] edgeHi, int[] edgeTarget,
+                        int[][] edgeTags, int[][] acceptTags) {
+            this.nodeEdges = nodeEdges;
+            this.edgeLo = edgeLo;
+            this.edgeHi = edgeHi;
+            this.edgeTarget = edgeTarget;
+            this.edgeTags = edgeTags;
+            this.acceptTags = acceptTags;
+        }
+
+        /**
+         * @return the tables, or null if the pattern is not one-pass
+         */
+        static OnePass build(CompiledAutomaton p) {
+            if (p.accept < 0) {
+                return null;
+            }
+            int slotCount = 2 * (p.getGroupCount() + 1);
+            Map<Integer, Integer> nodes = new HashMap<Integer, Integer>();
+            List<Integer> order = new ArrayList<Integer>();
+            nodes.put(p.start, 0);
+            order.add(p.start);
+
+            List<Integer> nodeEdges = new ArrayList<Integer>();
+            List<long[]> edges = new ArrayList<long[]>();
+            List<int[]> edgeTags = new ArrayList<int[]>();
+            List<int[]> acceptTags = new ArrayList<int[]>();
+            for (int n = 0; n < order.size(); n++) {
+                nodeEdges.add(edges.size());
+                // Walk the epsilon paths; a state reached twice makes the pattern ambiguous.
+                Map<Integer, int[]> reached = new LinkedHashMap<Integer, int[]>();
+                Deque<int[]> pending = new ArrayDeque<int[]>();
+                pending.push(new int[0]);
+                Deque<Integer> states = new ArrayDeque<Integer>();
+                states.push(order.get(n));
+                while (!states.isEmpty()) {
+                    int s = states.pop();
+                    int[] tags = pending.pop();
+                    if (!p.canReachAccept(s)) {
+                        continue;
+                    }
+                    if (reached.containsKey(s)) {
+                        return null;
+                    }
+                    if (p.tags[s] >= 0 && p.tags[s] < slotCount) {
+                        tags = Arrays.copyOf(tags, tags.length + 1);
+                        tags[tags.length - 1] = p.tags[s];
+                    }
+                    reached.put(s, tags);
+                    for (int i = p.epsStart[s + 1] - 1; i >= p.epsStart[s]; i--) {
+                        states.push(p.epsTarget[i]);
+                        pending.push(tags);
+                    }
+                }
+
+                List<long[]> nodeRanges = new ArrayList<long[]>();
+                for (Map.Entry<Integer, int[]> entry : reached.entrySet()) {
+                    int s = entry.getKey();
+                    for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                        int t = p.edgeTarget[e];
+                        if (!p.canReachAccept(t)) {
+                            continue;
+                        }
+                        if (!nodes.containsKey(t)) {
+                            nodes.put(t, order.size());
+                            order.add(t);
+                        }
+                        nodeRanges.add(new long[]{p.edgeLo[e], p.edgeHi[e], nodes.get(t), edgeTags.size()});
+                        edgeTags.add(entry.getValue());
+                    }
+                }
+                Collections.sort(nodeRanges, new Comparator<long[]>() {
+                    public int compare(long[] a, long[] b) {
+                        return Long.compare(a[0], b[0]);
+                    }
+                });
+                for (int i = 1; i < nodeRanges.size(); i++) {
+                    if (nodeRanges.get(i)[0] <= nodeRanges.get(i - 1)[1]) {
+                        return null;
+                    }
+                }
+                edges.addAll(nodeRanges);
+                acceptTags.add(reached.get(p.accept));
+            }
+            nodeEdges.add(edges.size());
+
+            int[] nodeStart = new int[nodeEdges.size()];
+            for (int i = 0; i < nodeStart.length; i++) {
+                nodeStart[i] = nodeEdges.get(i);
+            }
+            char[] lo = new char[edges.size()];
+            char[] hi = new char[edges.size()];
+            int[] target = new int[edges.size()];
+            int[][] tags = new int[edges.size()][];
+            for (int i = 0; i < lo.length; i++) {
+                long[] edge = edges.get(i);
+                lo[i] = (char) edge[0];
+                hi[i] = (char) edge[1];
+                target[i] = (int) edge[2];
+                tags[i] = edgeTags.get((int) edge[3]);
+            }
+            return new OnePass(nodeStart, lo, hi, target, tags,
+                    acceptTags.toArray(new int[acceptTags.size()][]));
+        }
+
+        GroupMatch match(CharSequence text, int[] slots) {
+            Arrays.fill(slots, -1);
+            slots[0] = 0;
+            int node = 0;
+            for (int i = 0; i < text.length(); i++) {
+                int e = findEdge(node, text.charAt(i));
+                if (e < 0) {
+                    return null;
+                }
+                for (int tag : edgeTags[e]) {
+                    slots[tag] = i;
+                }
+                node = edgeTarget[e];
+            }
+            if (acceptTags[node] == null) {
+                return null;
+            }
+            for (int tag : acceptTags[node]) {
+                slots[tag] = text.length();
+            }
+            int[] result = slots.clone();
+            result[1] = text.length();
+            return new GroupMatch(result);
+        }
+
+        /**
+         * Binary searches the sorted, disjoint ranges of a node's edges.
+         * @return the edge whose range holds ch, or -1
+         */
+        private int findEdge(int node, char ch) {
+            int lo = nodeEdges[node];
+            int hi = nodeEdges[node + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ch < edgeLo[mid]) {
+                    hi = mid - 1;
+                } else if (ch > edgeHi[mid]) {
+                    lo = mid + 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * This class partitions the char space into equivalence classes for an automaton: two
+ * characters are in the same class if every edge label either matches both or neither.
+ * Tables indexed by class instead of by character then need one column per class
+ * rather than 65,536.
+ *
+ * Classes are stored as sorted, contiguous ranges, each mapped to a class id. A class may
+ * be made of several ranges; everything no label mentions shares class 0. Lookups go
+ * through a two-level table: the high byte of a character picks a block of 256 class
+ * ids and the low byte indexes into it. Blocks with the same contents are stored once,
+ * so a typical pattern needs a few blocks, about a kilobyte, and every lookup is two
+ * array reads.
+ */
+public class CharClasses {
+    private final char[] rangeStart;
+    private final int[] rangeClass;
+    private final int classCount;
+    private final char[] blockStart = new char[256];
+    private final char[] blocks;
+
+    private CharClasses(char[] rangeStart, int[] rangeClass, int classCount) {
+        this.rangeStart = rangeStart;
+        this.rangeClass = rangeClass;
+        this.classCount = classCount;
+
+        Map<String, Integer> shared = new HashMap<String, Integer>();
+        StringBuilder table = new StringBuilder();
+        char[] block = new char[256];
+        int r = 0;
+        for (int high = 0; high < 256; high++) {
+            for (int low = 0; low < 256; low++) {
+                int c = high << 8 | low;
+                while (r + 1 < rangeStart.length && rangeStart[r + 1] <= c) {
+                    r++;
+                }
+                block[low] = (char) rangeClass[r];
+            }
+            String contents = new String(block);
+            Integer start = shared.get(contents);
+            if (start == null) {
+                start = table.length();
+                shared.put(contents, start);
+                table.append(contents);
+            }
+            // Block offsets are multiples of 256 below 65,536, so they fit in a char.
+            blockStart[high] = (char) start.intValue();
+        }
+        this.blocks = table.toString().toCharArray();
+    }
+
+    /**
+     * Computes the classes distinguished by the edge labels of a compiled automaton
+     *
+     * @param program the automaton whose labels to partition by
+     * @return the classes
+     */
+    public static CharClasses of(CompiledAutomaton program) {
+        return of(program.edgeLo, program.edgeHi);
+    }
+
+    /**
+     * Computes the classes distinguished by a list of inclusive character ranges
+     */
+    static CharClasses of(char[] lo, char[] hi) {
+        // Every label starts a new elementary range at lo and ends it after hi.
+        TreeSet<Integer> bounds = new TreeSet<Integer>();
+        bounds.add(0);
+        for (int i = 0; i < lo.length; i++) {
+            bounds.add((int) lo[i]);
+            if (hi[i] < Character.MAX_VALUE) {
+                bounds.add(hi[i] + 1);
+            }
+        }
+
+        // Elementary ranges covered by exactly the same labels share a class. Sweeping
+        // the bounds in order, each label covers from its low bound until its high one.
+        List<Long> labels = new ArrayList<Long>(new TreeSet<Long>(pack(lo, hi)));
+        Map<Integer, List<Integer>> opening = new HashMap<Integer, List<Integer>>();
+        Map<Integer, List<Integer>> closing = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < labels.size(); i++) {
+            long label = labels.get(i);
+            event(opening, (int) (label >>> 16), i);
+            event(closing, (int) (label & 0xFFFF) + 1, i);
+        }
+        char[] rangeStart = new char[bounds.size()];
+        int[] rangeClass = new int[bounds.size()];
+        Map<BitSet, Integer> classes = new HashMap<BitSet, Integer>();
+        classes.put(new BitSet(), 0);
+        BitSet covering = new BitSet();
+        int r = 0;
+        for (int start : bounds) {
+            if (closing.containsKey(start)) {
+                for (int i : closing.get(start)) {
+                    covering.clear(i);
+                }
+            }
+            if (opening.containsKey(start)) {
+                for (int i : opening.get(start)) {
+                    covering.set(i);
+                }
+            }
+            Integer id = classes.get(covering);
+            if (id == null) {
+                id = classes.size();
+                classes.put((BitSet) covering.clone(), id);
+            }
+            rangeStart[r] = (char) start;
+            rangeClass[r++] = id;
+        }
+        return new CharClasses(rangeStart, rangeClass, classes.size());
+    }
+
+    private static List<Long> pack(char[] lo, char[] hi) {
+        List<Long> labels = new ArrayList<Long>(lo.length);
+        for (int i = 0; i < lo.length; i++) {
+            labels.add(((long) lo[i] << 16) | hi[i]);
+        }
+        return labels;
+    }
+
+    private static void event(Map<Integer, List<Integer>> events, int bound, int label) {
+        List<Integer> labels = events.get(bound);
+        if (labels == null) {
+            labels = new ArrayList<Integer>();
+            events.put(bound, labels);
+        }
+        labels.add(label);
+    }
+
+    /**
+     * @param c a character
+     * @return the class of c
+     */
+    public int classOf(char c) {
+        return blocks[blockStart[c >>> 8] + (c & 0xFF)];
+    }
+
+    /**
+     * @return the number of classes
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @param cls a class id
+     * @return some character in the class, or -1 if it has none
+     */
+    public int representative(int cls) {
+        for (int r = 0; r < rangeClass.length; r++) {
+            if (rangeClass[r] == cls) {
+                return rangeStart[r];
+            }
+        }
+        return -1;
+    }
+
+    int serializedSize() {
+        return 8 + rangeStart.length * 6;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(classCount);
+        out.putInt(rangeStart.length);
+        for (int r = 0; r < rangeStart.length; r++) {
+            out.putChar(rangeStart[r]);
+            out.putInt(rangeClass[r]);
+        }
+    }
+
+    static CharClasses readFrom(ByteBuffer in) {
+        int classCount = in.getInt();
+        int ranges = in.getInt();
+        // There is at most one range per character, so larger counts are corrupt.
+        if (classCount < 1 || classCount > 0x10000 || ranges < 0 || ranges > 0x10000
+                || in.remaining() < ranges * 6L) {
+            throw new IllegalArgumentException("Corrupt character classes: " + classCount + " classes in "
+                    + ranges + " ranges");
+        }
+        char[] rangeStart = new char[ranges];
+        int[] rangeClass = new int[ranges];
+        for (int r = 0; r < ranges; r++) {
+            rangeStart[r] = in.getChar();
+            rangeClass[r] = in.getInt();
+            if (rangeClass[r] < 0 || rangeClass[r] >= classCount || (r > 0 && rangeStart[r] <= rangeStart[r - 1])) {
+                throw new IllegalArgumentException("Corrupt character classes at range " + r);
+            }
+        }
+        if (ranges == 0 || rangeStart[0] != 0) {
+            throw new IllegalArgumentException("Character classes must start at \\u0000");
+        }
+        return new CharClasses(rangeStart, rangeClass, classCount);
+    }
+}
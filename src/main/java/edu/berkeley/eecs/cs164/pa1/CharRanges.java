@@ -0,0 +1,208 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * This class is an immutable set of characters, stored as sorted, disjoint, non-adjacent
+ * inclusive ranges. It labels the transitions built for character classes such as
+ * [a-z], [^...], . and \d, so a class costs one transition rather than an alternation
+ * over every character in it.
+ *
+ * Membership of an ASCII character is a single bit test; anything else is a binary
+ * search over the ranges.
+ */
+public final class CharRanges {
+    /**
+     * \d: the ASCII digits
+     */
+    public static final CharRanges DIGIT = of('0', '9');
+
+    /**
+     * \w: ASCII letters, digits and underscore
+     */
+    public static final CharRanges WORD = of('a', 'z').union(of('A', 'Z')).union(DIGIT).union(of('_', '_'));
+
+    /**
+     * \s: space, tab, newline, vertical tab, form feed and carriage return
+     */
+    public static final CharRanges SPACE = of(' ', ' ').union(of('\t', '\r'));
+
+    /**
+     * .: every character except newline
+     */
+    public static final CharRanges DOT = of('\n', '\n').complement();
+
+    private final char[] lo;
+    private final char[] hi;
+    private final long ascii0;
+    private final long ascii1;
+
+    private CharRanges(char[] lo, char[] hi) {
+        this.lo = lo;
+        this.hi = hi;
+        long bits0 = 0;
+        long bits1 = 0;
+        for (int r = 0; r < lo.length && lo[r] < 128; r++) {
+            for (int c = lo[r]; c <= Math.min(hi[r], 127); c++) {
+                if (c < 64) {
+                    bits0 |= 1L << c;
+                } else {
+                    bits1 |= 1L << c;
+                }
+            }
+        }
+        this.ascii0 = bits0;
+        this.ascii1 = bits1;
+    }
+
+    /**
+     * @param lo the first character of the range
+     * @param hi the last character of the range, inclusive
+     * @return the set of characters from lo to hi
+     */
+    public static CharRanges of(char lo, char hi) {
+        if (lo > hi) {
+            throw new IllegalArgumentException("Empty range " + lo + "-" + hi);
+        }
+        return new CharRanges(new char[]{lo}, new char[]{hi});
+    }
+
+    /**
+     * @param other another set
+     * @return the characters in either set
+     */
+    public CharRanges union(CharRanges other) {
+        int n = lo.length + other.lo.length;
+        long[] ranges = new long[n];
+        for (int r = 0; r < lo.length; r++) {
+            ranges[r] = ((long) lo[r] << 16) | hi[r];
+        }
+        for (int r = 0; r < other.lo.length; r++) {
+            ranges[lo.length + r] = ((long) other.lo[r] << 16) | other.hi[r];
+        }
+        Arrays.sort(ranges);
+
+        char[] resultLo = new char[n];
+        char[] resultHi = new char[n];
+        int count = 0;
+        for (long range : ranges) {
+            char l = (char) (range >>> 16);
+            char h = (char) range;
+            // Overlapping and adjacent ranges are merged.
+            if (count > 0 && l <= resultHi[count - 1] + 1) {
+                resultHi[count - 1] = (char) Math.max(resultHi[count - 1], h);
+            } else {
+                resultLo[count] = l;
+                resultHi[count++] = h;
+            }
+        }
+        return new CharRanges(Arrays.copyOf(resultLo, count), Arrays.copyOf(resultHi, count));
+    }
+
+    /**
+     * @return the characters not in this set
+     */
+    public CharRanges complement() {
+        char[] resultLo = new char[lo.length + 1];
+        char[] resultHi = new char[lo.length + 1];
+        int count = 0;
+        int next = 0;
+        for (int r = 0; r < lo.length; r++) {
+            if (lo[r] > next) {
+                resultLo[count] = (char) next;
+                resultHi[count++] = (char) (lo[r] - 1);
+            }
+            next = hi[r] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            resultLo[count] = (char) next;
+            resultHi[count++] = Character.MAX_VALUE;
+        }
+        return new CharRanges(Arrays.copyOf(resultLo, count), Arrays.copyOf(resultHi, count));
+    }
+
+    /**
+     * @param c a character
+     * @return true if c is in this set
+     */
+    public boolean contains(char c) {
+        if (c < 64) {
+            return (ascii0 & (1L << c)) != 0;
+        }
+        if (c < 128) {
+            return (ascii1 & (1L << c)) != 0;
+        }
+        int r = Arrays.binarySearch(lo, c);
+        if (r >= 0) {
+            return true;
+        }
+        r = -r - 2;
+        return r >= 0 && c <= hi[r];
+    }
+
+    /**
+     * @return the number of ranges
+     */
+    public int getRangeCount() {
+        return lo.length;
+    }
+
+    /**
+     * @param r a range index
+     * @return the first character of range r
+     */
+    public char getLow(int r) {
+        return lo[r];
+    }
+
+    /**
+     * @param r a range index
+     * @return the last character of range r, inclusive
+     */
+    public char getHigh(int r) {
+        return hi[r];
+    }
+
+    /**
+     * @return true if this set holds exactly one character
+     */
+    public boolean isSingleton() {
+        return lo.length == 1 && lo[0] == hi[0];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CharRanges that = (CharRanges) o;
+
+        return Arrays.equals(lo, that.lo) && Arrays.equals(hi, that.hi);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(lo) + Arrays.hashCode(hi);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int r = 0; r < lo.length; r++) {
+            append(builder, lo[r]);
+            if (hi[r] != lo[r]) {
+                builder.append('-');
+                append(builder, hi[r]);
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private static void append(StringBuilder builder, char c) {
+        if (c < 0x20 || c >= 0x7F || c == '\\' || c == ']' || c == '-' || c == '^') {
+            builder.append(String.format("\\u%04x", (int) c));
+        } else {
+            builder.append(c);
+        }
+    }
+}
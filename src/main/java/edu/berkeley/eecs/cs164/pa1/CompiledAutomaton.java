@@ -0,0 +1,366 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class is an immutable, array-backed form of an {@link Automaton}. States are
+ * numbered 0..n-1, in breadth-first order from the start state when compiled from an
+ * {@link Automaton} (see also {@link RegexParser#compile(String)}), and the outgoing edges
+ * of state s are stored in the index range [edgeStart[s], edgeStart[s + 1]) of the
+ * label and target arrays (epsilon edges likewise in their own arrays). Every edge is
+ * labelled with an inclusive range [edgeLo, edgeHi]; a plain character is a range of one,
+ * and a character class becomes one edge per range of its {@link CharRanges}.
+ *
+ * For automata up to {@link #CLOSURE_BITSET_LIMIT} states the epsilon closure of every
+ * state is precomputed as a bitset, so following an edge is a single OR of words. Larger
+ * automata fall back to walking the epsilon edges, since the bitsets grow quadratically.
+ */
+public class CompiledAutomaton {
+    /**
+     * Largest state count for which epsilon closures are precomputed
+     */
+    public static final int CLOSURE_BITSET_LIMIT = 4096;
+
+    final int stateCount;
+    final int start;
+    final int accept;
+    final int words;
+
+    final int[] edgeStart;
+    final char[] edgeLo;
+    final char[] edgeHi;
+    final int[] edgeTarget;
+
+    final int[] epsStart;
+    final int[] epsTarget;
+    // The capture slot of each state, or -1.
+    final int[] tags;
+
+    private final long[] closures;
+    private final boolean[] canReachAccept;
+    private volatile Literals literals;
+
+    CompiledAutomaton(int stateCount, int start, int accept,
+                      int[] edgeStart, char[] edgeLo, char[] edgeHi, int[] edgeTarget,
+                      int[] epsStart, int[] epsTarget, int[] tags) {
+        this.stateCount = stateCount;
+        this.start = start;
+        this.accept = accept;
+        this.words = (stateCount + 63) >>> 6;
+        this.edgeStart = edgeStart;
+        this.edgeLo = edgeLo;
+        this.edgeHi = edgeHi;
+        this.edgeTarget = edgeTarget;
+        this.epsStart = epsStart;
+        this.epsTarget = epsTarget;
+        this.tags = tags;
+        this.closures = stateCount <= CLOSURE_BITSET_LIMIT ? computeClosures() : null;
+        this.canReachAccept = computeCanReachAccept();
+    }
+
+    /**
+     * Compiles an NFA into its array form
+     *
+     * @param nfa the nfa to compile
+     * @return the compiled automaton
+     */
+    public static CompiledAutomaton compile(Automaton nfa) {
+        return compile(nfa, new AutomatonState[0], new int[0]);
+    }
+
+    /**
+     * Compiles an NFA, reporting the numbers given to some of its states
+     * @param tracked states whose numbers to report
+     * @param trackedIds filled with the number of each tracked state, or -1 if it is unreachable
+     */
+    static CompiledAutomaton compile(Automaton nfa, AutomatonState[] tracked, int[] trackedIds) {
+        // Number the states in breadth-first order.
+        Map<AutomatonState, Integer> ids = new HashMap<AutomatonState, Integer>();
+        List<AutomatonState> order = new ArrayList<AutomatonState>();
+        ids.put(nfa.getStart(), 0);
+        order.add(nfa.getStart());
+        int edges = 0;
+        int epsilons = 0;
+        for (int i = 0; i < order.size(); i++) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : order.get(i).getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (entry.getKey() == null) {
+                        epsilons++;
+                    } else {
+                        edges++;
+                    }
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, order.size());
+                        order.add(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : order.get(i).getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    edges += entry.getKey().getRangeCount();
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, order.size());
+                        order.add(target);
+                    }
+                }
+            }
+        }
+
+        int n = order.size();
+        Integer acceptId = ids.get(nfa.getOut());
+        int[] edgeStart = new int[n + 1];
+        char[] edgeLo = new char[edges];
+        char[] edgeHi = new char[edges];
+        int[] edgeTarget = new int[edges];
+        int[] epsStart = new int[n + 1];
+        int[] epsTarget = new int[epsilons];
+        int[] tags = new int[n];
+        int e = 0;
+        int eps = 0;
+        for (int s = 0; s < n; s++) {
+            edgeStart[s] = e;
+            epsStart[s] = eps;
+            tags[s] = order.get(s).getTag();
+            for (Map.Entry<Character, Set<AutomatonState>> entry : order.get(s).getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (entry.getKey() == null) {
+                        epsTarget[eps++] = ids.get(target);
+                    } else {
+                        edgeLo[e] = entry.getKey();
+                        edgeHi[e] = entry.getKey();
+                        edgeTarget[e++] = ids.get(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : order.get(s).getClassTransitions()) {
+                CharRanges chars = entry.getKey();
+                for (AutomatonState target : entry.getValue()) {
+                    for (int r = 0; r < chars.getRangeCount(); r++) {
+                        edgeLo[e] = chars.getLow(r);
+                        edgeHi[e] = chars.getHigh(r);
+                        edgeTarget[e++] = ids.get(target);
+                    }
+                }
+            }
+        }
+        edgeStart[n] = e;
+        epsStart[n] = eps;
+
+        for (int i = 0; i < tracked.length; i++) {
+            Integer id = ids.get(tracked[i]);
+            trackedIds[i] = id == null ? -1 : id;
+        }
+
+        // An unreachable accept state can never match; -1 keeps every set test false.
+        return new CompiledAutomaton(n, 0, acceptId == null ? -1 : acceptId,
+                edgeStart, edgeLo, edgeHi, edgeTarget, epsStart, epsTarget, tags);
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return the number of range-labelled edges
+     */
+    public int getEdgeCount() {
+        return edgeLo.length;
+    }
+
+    /**
+     * @return the number of epsilon edges
+     */
+    public int getEpsilonEdgeCount() {
+        return epsTarget.length;
+    }
+
+    /**
+     * @return the number of capture groups tagged in the automaton, not counting the whole match
+     */
+    public int getGroupCount() {
+        int maxTag = -1;
+        for (int tag : tags) {
+            maxTag = Math.max(maxTag, tag);
+        }
+        return maxTag < 0 ? 0 : maxTag / 2;
+    }
+
+    /**
+     * @return true if every edge is labelled with ASCII characters only
+     */
+    public boolean isAscii() {
+        for (char hi : edgeHi) {
+            if (hi >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The literals every match contains, analyzed on first use. Racing threads may each
+     * compute them, but always to the same result.
+     *
+     * @return the required literals
+     */
+    public Literals getLiterals() {
+        Literals result = literals;
+        if (result == null) {
+            result = Literals.of(this);
+            literals = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return whether epsilon closures were precomputed for this automaton
+     */
+    public boolean hasClosureBitsets() {
+        return closures != null;
+    }
+
+    /**
+     * Whether the accept state can be reached from a state by some path. A simulation
+     * that only holds states for which this is false can never accept.
+     *
+     * @param state the state to check
+     * @return true if the accept state is reachable from state
+     */
+    public boolean canReachAccept(int state) {
+        return canReachAccept[state];
+    }
+
+    /**
+     * Adds the epsilon closure of a state to a bitset of states.
+     * @param set the bitset to add to, {@link #words} long
+     * @param state the state whose closure to add
+     * @param stack scratch space of at least {@link #stateCount} ints, used when closures are not precomputed
+     */
+    void addClosure(long[] set, int state, int[] stack) {
+        if (closures != null) {
+            int row = state * words;
+            for (int w = 0; w < words; w++) {
+                set[w] |= closures[row + w];
+            }
+            return;
+        }
+
+        int top = 0;
+        if (!isSet(set, 0, state)) {
+            set[state >>> 6] |= 1L << state;
+            stack[top++] = state;
+        }
+        while (top > 0) {
+            int s = stack[--top];
+            for (int i = epsStart[s]; i < epsStart[s + 1]; i++) {
+                int t = epsTarget[i];
+                if (!isSet(set, 0, t)) {
+                    set[t >>> 6] |= 1L << t;
+                    stack[top++] = t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every state in a bitset across the edges whose range holds ch.
+     * @param from the current states, closed under epsilon moves
+     * @param to cleared and filled with the states reached, closed under epsilon moves
+     * @param ch character to transition with
+     * @param stack scratch space as for {@link #addClosure(long[], int, int[])}
+     * @return false if no state was reached
+     */
+    boolean step(long[] from, long[] to, char ch, int[] stack) {
+        boolean live = false;
+        Arrays.fill(to, 0L);
+        for (int w = 0; w < words; w++) {
+            long bits = from[w];
+            while (bits != 0) {
+                int s = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+                    if (edgeLo[e] <= ch && ch <= edgeHi[e]) {
+                        addClosure(to, edgeTarget[e], stack);
+                        live = true;
+                    }
+                }
+            }
+        }
+        return live;
+    }
+
+    static boolean isSet(long[] set, int offset, int state) {
+        return state >= 0 && (set[offset + (state >>> 6)] & (1L << state)) != 0;
+    }
+
+    private boolean[] computeCanReachAccept() {
+        boolean[] result = new boolean[stateCount];
+        if (accept < 0) {
+            return result;
+        }
+
+        // Reverse all edges, then search backwards from the accept state.
+        int[] inStart = new int[stateCount + 1];
+        for (int t : edgeTarget) {
+            inStart[t + 1]++;
+        }
+        for (int t : epsTarget) {
+            inStart[t + 1]++;
+        }
+        for (int s = 0; s < stateCount; s++) {
+            inStart[s + 1] += inStart[s];
+        }
+        int[] fill = Arrays.copyOf(inStart, stateCount);
+        int[] inSource = new int[edgeTarget.length + epsTarget.length];
+        for (int s = 0; s < stateCount; s++) {
+            for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+                inSource[fill[edgeTarget[e]]++] = s;
+            }
+            for (int e = epsStart[s]; e < epsStart[s + 1]; e++) {
+                inSource[fill[epsTarget[e]]++] = s;
+            }
+        }
+
+        int[] stack = new int[stateCount];
+        int top = 0;
+        result[accept] = true;
+        stack[top++] = accept;
+        while (top > 0) {
+            int t = stack[--top];
+            for (int i = inStart[t]; i < inStart[t + 1]; i++) {
+                int s = inSource[i];
+                if (!result[s]) {
+                    result[s] = true;
+                    stack[top++] = s;
+                }
+            }
+        }
+        return result;
+    }
+
+    private long[] computeClosures() {
+        long[] result = new long[stateCount * words];
+        int[] stack = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            // The row being filled doubles as the visited set of the traversal.
+            int row = s * words;
+            int top = 0;
+            result[row + (s >>> 6)] |= 1L << s;
+            stack[top++] = s;
+            while (top > 0) {
+                int u = stack[--top];
+                for (int i = epsStart[u]; i < epsStart[u + 1]; i++) {
+                    int t = epsTarget[i];
+                    if (!isSet(result, row, t)) {
+                        result[row + (t >>> 6)] |= 1L << t;
+                        stack[top++] = t;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
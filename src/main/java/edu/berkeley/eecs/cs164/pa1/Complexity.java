@@ -0,0 +1,220 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * This class reports how expensive an NFA is to simulate and to determinize:
+ *
+ * <ul>
+ * <li>its state, edge and epsilon edge counts,</li>
+ * <li>its nullable loops: cycles of epsilon edges, which a loop over a subexpression
+ * that can match the empty string, such as (a*)*, produces,</li>
+ * <li>an estimate of the states its DFA needs, found by running subset construction up
+ * to a limit. Below the limit the count is exact; at it, the DFA has at least as many.</li>
+ * </ul>
+ *
+ * {@link ComplexityBudget} checks reports against limits before a pattern is used.
+ */
+public final class Complexity {
+    private final int states;
+    private final int edges;
+    private final int epsilonEdges;
+    private final int nullableLoops;
+    private final int dfaStates;
+    private final boolean dfaExact;
+    private final boolean complete;
+
+    private Complexity(int states, int edges, int epsilonEdges, int nullableLoops, int dfaStates, boolean dfaExact,
+                       boolean complete) {
+        this.states = states;
+        this.edges = edges;
+        this.epsilonEdges = epsilonEdges;
+        this.nullableLoops = nullableLoops;
+        this.dfaStates = dfaStates;
+        this.dfaExact = dfaExact;
+        this.complete = complete;
+    }
+
+    /**
+     * Analyzes an NFA
+     *
+     * @param nfa          the nfa to analyze
+     * @param dfaStateLimit the most DFA states to build while estimating
+     * @return the report
+     */
+    public static Complexity analyze(Automaton nfa, int dfaStateLimit) {
+        return analyze(CompiledAutomaton.compile(nfa), dfaStateLimit);
+    }
+
+    /**
+     * Analyzes a compiled NFA
+     *
+     * @param program       the nfa to analyze
+     * @param dfaStateLimit the most DFA states to build while estimating, or 0 to skip the estimate
+     * @return the report
+     */
+    public static Complexity analyze(CompiledAutomaton program, int dfaStateLimit) {
+        int dfaStates = 0;
+        boolean dfaExact = false;
+        if (dfaStateLimit > 0) {
+            DFA dfa = DFA.tryDeterminize(program, dfaStateLimit);
+            dfaExact = dfa != null;
+            dfaStates = dfaExact ? dfa.getStateCount() : dfaStateLimit;
+        }
+        return new Complexity(program.getStateCount(), program.getEdgeCount(), program.getEpsilonEdgeCount(),
+                nullableLoops(program), dfaStates, dfaExact, true);
+    }
+
+    /**
+     * Reports the size of an NFA abandoned part way through parsing, without looking for
+     * loops or estimating its DFA
+     *
+     * @param states       the states built so far
+     * @param edges        the character edges built so far
+     * @param epsilonEdges the epsilon edges built so far
+     * @return the report
+     */
+    static Complexity partial(int states, int edges, int epsilonEdges) {
+        return new Complexity(states, edges, epsilonEdges, 0, 0, false, false);
+    }
+
+    public int getStates() {
+        return states;
+    }
+
+    public int getEdges() {
+        return edges;
+    }
+
+    public int getEpsilonEdges() {
+        return epsilonEdges;
+    }
+
+    /**
+     * @return the number of strongly connected groups of states joined by epsilon cycles
+     */
+    public int getNullableLoops() {
+        return nullableLoops;
+    }
+
+    /**
+     * @return the DFA states found, exact if {@link #isDfaEstimateExact()}, else a lower bound
+     */
+    public int getDfaStateEstimate() {
+        return dfaStates;
+    }
+
+    /**
+     * @return true if subset construction finished within its limit
+     */
+    public boolean isDfaEstimateExact() {
+        return dfaExact;
+    }
+
+    /**
+     * @return false if the report only counts what was built before parsing was abandoned
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        if (!complete) {
+            return "at least " + states + " states, " + edges + " edges, " + epsilonEdges + " epsilon edges";
+        }
+        return states + " states, " + edges + " edges, " + epsilonEdges + " epsilon edges, "
+                + nullableLoops + " nullable loops, " + (dfaExact ? "" : "at least ") + dfaStates + " DFA states";
+    }
+
+    /**
+     * Counts the epsilon cycles with Kosaraju's algorithm over the epsilon edges: a
+     * component with more than one state, or a state with an epsilon edge to itself, is a
+     * loop that can go round without reading anything.
+     */
+    private static int nullableLoops(CompiledAutomaton p) {
+        int n = p.stateCount;
+
+        // Order states by when a depth-first search over epsilon edges finishes them.
+        int[] finished = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = root;
+            visited[root] = true;
+            while (top > 0) {
+                int s = stack[top - 1];
+                if (p.epsStart[s] + cursor[s] < p.epsStart[s + 1]) {
+                    int t = p.epsTarget[p.epsStart[s] + cursor[s]++];
+                    if (!visited[t]) {
+                        visited[t] = true;
+                        stack[top++] = t;
+                    }
+                } else {
+                    top--;
+                    finished[count++] = s;
+                }
+            }
+        }
+
+        int[] inStart = new int[n + 1];
+        for (int t : p.epsTarget) {
+            inStart[t + 1]++;
+        }
+        for (int s = 0; s < n; s++) {
+            inStart[s + 1] += inStart[s];
+        }
+        int[] fill = Arrays.copyOf(inStart, n);
+        int[] inSource = new int[p.epsTarget.length];
+        for (int s = 0; s < n; s++) {
+            for (int e = p.epsStart[s]; e < p.epsStart[s + 1]; e++) {
+                inSource[fill[p.epsTarget[e]]++] = s;
+            }
+        }
+
+        // Components are whatever the reversed graph reaches, in reverse finishing order.
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int loops = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            int root = finished[i];
+            if (component[root] >= 0) {
+                continue;
+            }
+            int size = 0;
+            int top = 0;
+            stack[top++] = root;
+            component[root] = root;
+            while (top > 0) {
+                int t = stack[--top];
+                size++;
+                for (int j = inStart[t]; j < inStart[t + 1]; j++) {
+                    int s = inSource[j];
+                    if (component[s] < 0) {
+                        component[s] = root;
+                        stack[top++] = s;
+                    }
+                }
+            }
+            if (size > 1 || hasSelfLoop(p, root)) {
+                loops++;
+            }
+        }
+        return loops;
+    }
+
+    private static boolean hasSelfLoop(CompiledAutomaton p, int s) {
+        for (int e = p.epsStart[s]; e < p.epsStart[s + 1]; e++) {
+            if (p.epsTarget[e] == s) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
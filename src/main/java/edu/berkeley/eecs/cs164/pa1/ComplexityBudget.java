@@ -0,0 +1,105 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * This class limits what a pattern may cost before it is used. Simulating an NFA takes
+ * time linear in the input whatever the pattern, so there is no backtracking to guard
+ * against; what a hostile pattern can still blow up is the size of the NFA, and with it
+ * the cost per character, and the number of states its DFA needs.
+ *
+ * Patterns whose NFA has more states or edges than the budget allows are rejected with a
+ * {@link PatternTooComplexException}; {@link #compile(String)} rejects them while parsing,
+ * as soon as the NFA built so far is over budget. Patterns whose DFA needs more states than the
+ * budget allows are downgraded: they are simulated as a pure NFA, without a DFA cache,
+ * instead of thrashing one. Nullable loops are reported by {@link Complexity} but never
+ * rejected, since the simulation visits each state at most once per character.
+ */
+public final class ComplexityBudget {
+    /**
+     * A budget fit for patterns from untrusted sources
+     */
+    public static final ComplexityBudget DEFAULT = new ComplexityBudget(10000, 40000, LazyDFA.DEFAULT_MAX_STATES);
+
+    private final int maxStates;
+    private final int maxEdges;
+    private final int maxDfaStates;
+
+    /**
+     * Create a new budget
+     *
+     * @param maxStates    the most NFA states a pattern may have
+     * @param maxEdges     the most NFA edges, character and epsilon, a pattern may have
+     * @param maxDfaStates the most DFA states a pattern may need to be run as a DFA
+     */
+    public ComplexityBudget(int maxStates, int maxEdges, int maxDfaStates) {
+        if (maxStates < 1 || maxEdges < 0 || maxDfaStates < 0) {
+            throw new IllegalArgumentException("Invalid budget: " + maxStates + " states, "
+                    + maxEdges + " edges, " + maxDfaStates + " DFA states");
+        }
+        this.maxStates = maxStates;
+        this.maxEdges = maxEdges;
+        this.maxDfaStates = maxDfaStates;
+    }
+
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    public int getMaxEdges() {
+        return maxEdges;
+    }
+
+    public int getMaxDfaStates() {
+        return maxDfaStates;
+    }
+
+    /**
+     * Analyzes an NFA and checks it against the budget
+     *
+     * @param nfa the nfa to check
+     * @return the analysis, whose DFA estimate is exact if the DFA fits the budget
+     * @throws PatternTooComplexException if the NFA has too many states or edges
+     */
+    public Complexity check(Automaton nfa) {
+        CompiledAutomaton program = CompiledAutomaton.compile(nfa);
+        int edges = program.getEdgeCount() + program.getEpsilonEdgeCount();
+        if (program.getStateCount() > maxStates || edges > maxEdges) {
+            Complexity complexity = Complexity.analyze(program, 0);
+            throw new PatternTooComplexException("Pattern is over budget: " + complexity, complexity);
+        }
+        return estimate(program);
+    }
+
+    private Complexity estimate(CompiledAutomaton program) {
+        // One state more than the budget is enough to tell that the DFA does not fit.
+        return Complexity.analyze(program, maxDfaStates + 1);
+    }
+
+    /**
+     * @param complexity an analysis from {@link #check(Automaton)}
+     * @return true if the DFA fits the budget, false if the pattern should run as an NFA
+     */
+    public boolean allowsDfa(Complexity complexity) {
+        return maxDfaStates > 0 && complexity.isDfaEstimateExact()
+                && complexity.getDfaStateEstimate() <= maxDfaStates;
+    }
+
+    /**
+     * Parses a pattern and builds a simulator for it within the budget: with a DFA cache
+     * big enough for the whole DFA if it fits, else simulating the NFA directly
+     *
+     * @param pattern the pattern to compile
+     * @return the simulator
+     * @throws RegexParseException if the pattern is invalid
+     * @throws PatternTooComplexException if the NFA has too many states or edges
+     */
+    public NFASimulator compile(String pattern) {
+        Automaton nfa = RegexParser.parse(pattern, this);
+        Complexity complexity = estimate(CompiledAutomaton.compile(nfa));
+        return new NFASimulator(nfa, allowsDfa(complexity) ? complexity.getDfaStateEstimate() : 0);
+    }
+
+    @Override
+    public String toString() {
+        return maxStates + " states, " + maxEdges + " edges, " + maxDfaStates + " DFA states";
+    }
+}
@@ -0,0 +1,467 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * This class is a fully determinized automaton with a transition table indexed by state
+ * and character class (see {@link CharClasses}). Missing transitions lead to an implicit
+ * dead state, stored as -1.
+ *
+ * A DFA is built from an NFA by subset construction, can be minimized with Hopcroft's
+ * algorithm, and can be written to and read back from a compact binary form so that
+ * precompiled matchers load with a single buffer read. Instances are immutable.
+ */
+public class DFA {
+    private static final int MAGIC = 0x44464131;
+
+    private final CharClasses classes;
+    private final int stateCount;
+    private final int classCount;
+    private final int start;
+    private final boolean[] accepting;
+    private final int[] transitions;
+
+    private DFA(CharClasses classes, int start, boolean[] accepting, int[] transitions) {
+        this.classes = classes;
+        this.stateCount = accepting.length;
+        this.classCount = classes.getClassCount();
+        this.start = start;
+        this.accepting = accepting;
+        this.transitions = transitions;
+    }
+
+    /**
+     * Determinizes an NFA by subset construction
+     *
+     * @param nfa       the nfa to determinize
+     * @param maxStates the most DFA states to build
+     * @return the DFA
+     * @throws IllegalArgumentException if the DFA would need more than maxStates states
+     */
+    public static DFA determinize(Automaton nfa, int maxStates) {
+        return determinize(CompiledAutomaton.compile(nfa), maxStates);
+    }
+
+    /**
+     * Determinizes a compiled NFA by subset construction
+     *
+     * @param program   the nfa to determinize
+     * @param maxStates the most DFA states to build
+     * @return the DFA
+     * @throws IllegalArgumentException if the DFA would need more than maxStates states
+     */
+    public static DFA determinize(CompiledAutomaton program, int maxStates) {
+        DFA dfa = tryDeterminize(program, maxStates);
+        if (dfa == null) {
+            throw new IllegalArgumentException("DFA needs more than " + maxStates + " states");
+        }
+        return dfa;
+    }
+
+    /**
+     * Determinizes a compiled NFA by subset construction, giving up at a limit
+     *
+     * @param program   the nfa to determinize
+     * @param maxStates the most DFA states to build
+     * @return the DFA, or null if it would need more than maxStates states
+     */
+    static DFA tryDeterminize(CompiledAutomaton program, int maxStates) {
+        CharClasses classes = CharClasses.of(program);
+        int k = classes.getClassCount();
+        // A class with no characters can never be taken and keeps -1.
+        int[] representatives = new int[k];
+        for (int c = 0; c < k; c++) {
+            representatives[c] = classes.representative(c);
+        }
+
+        int[] stack = new int[program.stateCount];
+        Map<Key, Integer> ids = new HashMap<Key, Integer>();
+        List<long[]> sets = new ArrayList<long[]>();
+        long[] initial = new long[program.words];
+        program.addClosure(initial, program.start, stack);
+        ids.put(new Key(initial), 0);
+        sets.add(initial);
+
+        int[] transitions = new int[16 * k];
+        long[] next = new long[program.words];
+        for (int s = 0; s < sets.size(); s++) {
+            if (transitions.length < (s + 1) * k) {
+                transitions = Arrays.copyOf(transitions, transitions.length * 2);
+            }
+            for (int c = 0; c < k; c++) {
+                int target = -1;
+                if (representatives[c] >= 0 && program.step(sets.get(s), next, (char) representatives[c], stack)) {
+                    Key key = new Key(next);
+                    Integer id = ids.get(key);
+                    if (id == null) {
+                        if (sets.size() >= maxStates) {
+                            return null;
+                        }
+                        id = sets.size();
+                        long[] copy = next.clone();
+                        ids.put(new Key(copy), id);
+                        sets.add(copy);
+                    }
+                    target = id;
+                }
+                transitions[s * k + c] = target;
+            }
+        }
+
+        boolean[] accepting = new boolean[sets.size()];
+        for (int s = 0; s < accepting.length; s++) {
+            accepting[s] = CompiledAutomaton.isSet(sets.get(s), 0, program.accept);
+        }
+        return new DFA(classes, 0, accepting, Arrays.copyOf(transitions, sets.size() * k));
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the DFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted by the DFA, else false
+     */
+    public boolean matches(CharSequence text) {
+        int state = start;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * classCount + classes.classOf(text.charAt(i))];
+            if (state < 0) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    /**
+     * @return the number of states, not counting the implicit dead state
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return the character classes indexing the transition table
+     */
+    public CharClasses getClasses() {
+        return classes;
+    }
+
+    /**
+     * Minimizes the DFA with Hopcroft's partition refinement algorithm. States that cannot
+     * reach an accepting state fold into the implicit dead state.
+     *
+     * @return the minimal DFA accepting the same language
+     */
+    public DFA minimize() {
+        // Work on the complete DFA with the dead state made explicit as state n.
+        int n = stateCount + 1;
+        int k = classCount;
+        int dead = stateCount;
+        int[] delta = new int[n * k];
+        for (int i = 0; i < transitions.length; i++) {
+            delta[i] = transitions[i] < 0 ? dead : transitions[i];
+        }
+        Arrays.fill(delta, dead * k, n * k, dead);
+
+        // inverse[inStart[t * k + c] .. inStart[t * k + c + 1]) are the states entering t on c.
+        int[] inStart = new int[n * k + 1];
+        for (int s = 0; s < n; s++) {
+            for (int c = 0; c < k; c++) {
+                inStart[delta[s * k + c] * k + c + 1]++;
+            }
+        }
+        for (int i = 0; i < n * k; i++) {
+            inStart[i + 1] += inStart[i];
+        }
+        int[] fill = Arrays.copyOf(inStart, n * k);
+        int[] inverse = new int[n * k];
+        for (int s = 0; s < n; s++) {
+            for (int c = 0; c < k; c++) {
+                inverse[fill[delta[s * k + c] * k + c]++] = s;
+            }
+        }
+
+        // Blocks are contiguous runs of the elements array; marked states are swapped to
+        // the front of their block.
+        int[] elements = new int[n];
+        int[] location = new int[n];
+        int[] blockOf = new int[n];
+        int[] first = new int[n];
+        int[] end = new int[n];
+        int[] marked = new int[n];
+        int blocks = 0;
+        int size = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int begin = size;
+            for (int s = 0; s < n; s++) {
+                boolean accept = s < stateCount && accepting[s];
+                if (accept == (pass == 0)) {
+                    elements[size] = s;
+                    location[s] = size++;
+                    blockOf[s] = blocks;
+                }
+            }
+            if (size > begin) {
+                first[blocks] = begin;
+                end[blocks++] = size;
+            }
+        }
+
+        boolean[] waiting = new boolean[n * k];
+        Deque<Integer> worklist = new ArrayDeque<Integer>();
+        int smaller = blocks == 2 && end[1] - first[1] < end[0] - first[0] ? 1 : 0;
+        for (int c = 0; c < k; c++) {
+            waiting[smaller * k + c] = true;
+            worklist.add(smaller * k + c);
+        }
+
+        int[] splitter = new int[n];
+        int[] touched = new int[n];
+        while (!worklist.isEmpty()) {
+            int item = worklist.poll();
+            waiting[item] = false;
+            int a = item / k;
+            int c = item % k;
+
+            // Collect the states entering block a on c before anything moves.
+            int count = 0;
+            for (int i = first[a]; i < end[a]; i++) {
+                int t = elements[i];
+                for (int j = inStart[t * k + c]; j < inStart[t * k + c + 1]; j++) {
+                    splitter[count++] = inverse[j];
+                }
+            }
+
+            int touchedCount = 0;
+            for (int i = 0; i < count; i++) {
+                int s = splitter[i];
+                int b = blockOf[s];
+                if (marked[b] == 0) {
+                    touched[touchedCount++] = b;
+                }
+                int swap = first[b] + marked[b];
+                if (location[s] >= swap) {
+                    int other = elements[swap];
+                    elements[location[s]] = other;
+                    location[other] = location[s];
+                    elements[swap] = s;
+                    location[s] = swap;
+                    marked[b]++;
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                int b = touched[i];
+                int m = marked[b];
+                marked[b] = 0;
+                if (m == end[b] - first[b]) {
+                    continue;
+                }
+                int fresh = blocks++;
+                first[fresh] = first[b];
+                end[fresh] = first[b] + m;
+                first[b] = end[fresh];
+                for (int j = first[fresh]; j < end[fresh]; j++) {
+                    blockOf[elements[j]] = fresh;
+                }
+                for (int d = 0; d < k; d++) {
+                    int add;
+                    if (waiting[b * k + d]) {
+                        add = fresh;
+                    } else {
+                        add = end[fresh] - first[fresh] <= end[b] - first[b] ? fresh : b;
+                    }
+                    waiting[add * k + d] = true;
+                    worklist.add(add * k + d);
+                }
+            }
+        }
+
+        return fromBlocks(blockOf, blockOf[dead], delta, k);
+    }
+
+    /**
+     * Builds the quotient DFA, numbering blocks breadth-first from the start block and
+     * leaving the dead block out.
+     */
+    private DFA fromBlocks(int[] blockOf, int deadBlock, int[] delta, int k) {
+        int n = blockOf.length;
+        int[] representative = new int[n];
+        Arrays.fill(representative, -1);
+        for (int s = 0; s < n; s++) {
+            if (representative[blockOf[s]] < 0) {
+                representative[blockOf[s]] = s;
+            }
+        }
+
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        List<Integer> order = new ArrayList<Integer>();
+        if (blockOf[start] != deadBlock) {
+            number[blockOf[start]] = 0;
+            order.add(blockOf[start]);
+        }
+        for (int i = 0; i < order.size(); i++) {
+            int s = representative[order.get(i)];
+            for (int c = 0; c < k; c++) {
+                int b = blockOf[delta[s * k + c]];
+                if (b != deadBlock && number[b] < 0) {
+                    number[b] = order.size();
+                    order.add(b);
+                }
+            }
+        }
+
+        if (order.isEmpty()) {
+            // The language is empty: a single rejecting state with no way out.
+            int[] none = new int[k];
+            Arrays.fill(none, -1);
+            return new DFA(classes, 0, new boolean[1], none);
+        }
+
+        boolean[] accept = new boolean[order.size()];
+        int[] table = new int[order.size() * k];
+        for (int i = 0; i < order.size(); i++) {
+            int s = representative[order.get(i)];
+            accept[i] = accepting[s];
+            for (int c = 0; c < k; c++) {
+                int b = blockOf[delta[s * k + c]];
+                table[i * k + c] = b == deadBlock ? -1 : number[b];
+            }
+        }
+        return new DFA(classes, 0, accept, table);
+    }
+
+    /**
+     * Writes the DFA in its binary form: a magic number, the character classes, the state
+     * and class counts, the start state, the accepting states as a bitset, and the
+     * transition table with every entry stored as target + 1 in 1, 2 or 4 bytes, whichever
+     * is the smallest width that fits the state count.
+     *
+     * @return the serialized DFA
+     */
+    public byte[] toByteArray() {
+        int width = entryWidth(stateCount);
+        int acceptWords = (stateCount + 63) >>> 6;
+        ByteBuffer out = ByteBuffer.allocate(4 + classes.serializedSize() + 16 + acceptWords * 8
+                + transitions.length * width);
+        out.putInt(MAGIC);
+        classes.writeTo(out);
+        out.putInt(stateCount);
+        out.putInt(classCount);
+        out.putInt(start);
+        out.putInt(width);
+        for (int w = 0; w < acceptWords; w++) {
+            long bits = 0;
+            for (int b = 0; b < 64 && (w << 6) + b < stateCount; b++) {
+                if (accepting[(w << 6) + b]) {
+                    bits |= 1L << b;
+                }
+            }
+            out.putLong(bits);
+        }
+        for (int target : transitions) {
+            if (width == 1) {
+                out.put((byte) (target + 1));
+            } else if (width == 2) {
+                out.putShort((short) (target + 1));
+            } else {
+                out.putInt(target + 1);
+            }
+        }
+        return out.array();
+    }
+
+    /**
+     * Reads a DFA written by {@link #toByteArray()}, advancing the buffer past it
+     *
+     * @param in the buffer to read from
+     * @return the DFA
+     * @throws IllegalArgumentException if the buffer does not hold a valid DFA
+     */
+    public static DFA read(ByteBuffer in) {
+        try {
+            return readFrom(in);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated DFA", e);
+        }
+    }
+
+    private static DFA readFrom(ByteBuffer in) {
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a serialized DFA");
+        }
+        CharClasses classes = CharClasses.readFrom(in);
+        int stateCount = in.getInt();
+        int classCount = in.getInt();
+        int start = in.getInt();
+        int width = in.getInt();
+        if (classCount != classes.getClassCount() || stateCount < 1 || start < 0 || start >= stateCount
+                || width != entryWidth(stateCount)) {
+            throw new IllegalArgumentException("Corrupt DFA header");
+        }
+        // Check the counts against what the buffer holds before allocating anything.
+        long entries = (long) stateCount * classCount;
+        long acceptWords = (stateCount + 63L) >>> 6;
+        if (entries > Integer.MAX_VALUE || in.remaining() < acceptWords * 8 + entries * width) {
+            throw new IllegalArgumentException("DFA of " + stateCount + " states and " + classCount
+                    + " classes does not fit in the remaining " + in.remaining() + " bytes");
+        }
+
+        boolean[] accepting = new boolean[stateCount];
+        for (int w = 0; w < (stateCount + 63) >>> 6; w++) {
+            long bits = in.getLong();
+            for (int b = 0; b < 64 && (w << 6) + b < stateCount; b++) {
+                accepting[(w << 6) + b] = (bits & (1L << b)) != 0;
+            }
+        }
+        int[] transitions = new int[stateCount * classCount];
+        for (int i = 0; i < transitions.length; i++) {
+            int entry;
+            if (width == 1) {
+                entry = in.get() & 0xFF;
+            } else if (width == 2) {
+                entry = in.getShort() & 0xFFFF;
+            } else {
+                entry = in.getInt();
+            }
+            if (entry < 0 || entry > stateCount) {
+                throw new IllegalArgumentException("Corrupt DFA transition " + i);
+            }
+            transitions[i] = entry - 1;
+        }
+        return new DFA(classes, start, accepting, transitions);
+    }
+
+    private static int entryWidth(int stateCount) {
+        if (stateCount < 0xFF) {
+            return 1;
+        }
+        return stateCount < 0xFFFF ? 2 : 4;
+    }
+
+    /**
+     * Wraps a bitset so it can key a map by value
+     */
+    static class Key {
+        private final long[] bits;
+        private final int hash;
+
+        Key(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bits, ((Key) o).bits);
+        }
+    }
+}
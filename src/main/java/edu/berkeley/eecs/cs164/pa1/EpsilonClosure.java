@@ -0,0 +1,100 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class computes epsilon closures over the state objects of an NFA. States are
+ * numbered the first time they are seen, and a traversal marks each state it reaches
+ * with the number of the current closure, so starting a new closure costs one increment
+ * rather than clearing a visited set. A state is expanded only when it is first marked,
+ * so every closure looks at each state and epsilon edge at most once, and epsilon
+ * cycles such as those of (a*)* or (a?)+ are walked around exactly once.
+ *
+ * Instances hold marks between calls, so they are not thread-safe.
+ */
+final class EpsilonClosure {
+    private final Map<AutomatonState, Integer> index = new HashMap<AutomatonState, Integer>();
+    private int[] marks = new int[16];
+    private AutomatonState[] stack = new AutomatonState[16];
+    private int generation;
+    private long edgesWalked;
+
+    /**
+     * Find all states reachable from the input by epsilon moves
+     * @param states the set of states to start from
+     * @return set of all states reachable from the input by epsilon moves
+     */
+    Set<AutomatonState> closure(Collection<AutomatonState> states) {
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+        Set<AutomatonState> t = new HashSet<AutomatonState>();
+        int top = 0;
+        for (AutomatonState s : states) {
+            if (mark(s)) {
+                top = push(top, s);
+            }
+        }
+        while (top > 0) {
+            AutomatonState s = stack[--top];
+            t.add(s);
+            for (AutomatonState ep : s.getEpsilonTransitions()) {
+                edgesWalked++;
+                if (mark(ep)) {
+                    top = push(top, ep);
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Find all states NFA could be in after taking all possible epsilon moves and a character move.
+     * @param d current states
+     * @param c character to transition with
+     * @return all states possible by taking transition with label c and epsilons
+     */
+    Set<AutomatonState> step(Set<AutomatonState> d, char c) {
+        List<AutomatonState> input = new ArrayList<AutomatonState>();
+        for (AutomatonState s : d) {
+            input.addAll(s.getTransitions(c));
+        }
+        return closure(input);
+    }
+
+    /**
+     * @return the number of epsilon edges followed by every closure so far
+     */
+    long getEdgesWalked() {
+        return edgesWalked;
+    }
+
+    /**
+     * Marks a state as reached by the current closure
+     * @return false if it already was
+     */
+    private boolean mark(AutomatonState s) {
+        Integer i = index.get(s);
+        if (i == null) {
+            i = index.size();
+            index.put(s, i);
+            if (i == marks.length) {
+                marks = Arrays.copyOf(marks, 2 * i);
+            }
+        }
+        if (marks[i] == generation) {
+            return false;
+        }
+        marks[i] = generation;
+        return true;
+    }
+
+    private int push(int top, AutomatonState s) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, 2 * top);
+        }
+        stack[top] = s;
+        return top + 1;
+    }
+}
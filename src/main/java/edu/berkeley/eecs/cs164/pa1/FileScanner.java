@@ -0,0 +1,216 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class runs a pattern over every line of a file and reports the lines it matches
+ * in full. The file is memory-mapped a window at a time, so it can be far larger than the
+ * heap, and lines are never turned into Strings. Lines end at '\n', optionally preceded
+ * by '\r'.
+ *
+ * Lines are matched as UTF-8 without being decoded: the pattern is lowered to the bytes
+ * of its characters by {@link Utf8Lowering} and run directly over the mapped bytes. For
+ * patterns made only of ASCII characters the lowering changes nothing. Lines that are not
+ * well-formed UTF-8 never match.
+ *
+ * If every match has to contain some literal (see {@link Literals}), the scan jumps from
+ * one occurrence of its UTF-8 bytes to the next with a {@link LiteralSearcher} and only
+ * runs the pattern over the lines they fall in; all other lines are never decoded or
+ * stepped through.
+ *
+ * Scanners keep a {@link LazyDFA} warm across lines and files, so they are not thread-safe.
+ */
+public class FileScanner {
+    /**
+     * Receives the lines matched by a scan, in file order
+     */
+    public interface MatchListener {
+        /**
+         * @param offset byte offset of the start of the line
+         * @param length length of the line in bytes, not counting its terminator
+         */
+        void lineMatched(long offset, int length);
+    }
+
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final Automaton lowered;
+    private final CharClasses classes;
+    private final LazyDFA dfa;
+    private final LiteralSearcher literal;
+
+    /**
+     * Create a new scanner for a pattern
+     *
+     * @param pattern the pattern to compile
+     * @throws RegexParseException upon encountering a parse error
+     */
+    public FileScanner(String pattern) {
+        this(RegexParser.parse(pattern));
+    }
+
+    /**
+     * Create a new scanner from a given NFA structure
+     *
+     * @param nfa the nfa to match lines against
+     */
+    public FileScanner(Automaton nfa) {
+        this(Utf8Lowering.lower(nfa), byteSearcher(CompiledAutomaton.compile(nfa).getLiterals().getRequiredSearcher()));
+    }
+
+    private FileScanner(Automaton lowered, LiteralSearcher literal) {
+        this(lowered, CharClasses.of(CompiledAutomaton.compile(lowered)), literal);
+    }
+
+    private FileScanner(Automaton lowered, CharClasses classes, LiteralSearcher literal) {
+        this.lowered = lowered;
+        this.classes = classes;
+        this.dfa = new LazyDFA(lowered, classes, LazyDFA.DEFAULT_MAX_STATES);
+        this.literal = literal;
+    }
+
+    /**
+     * Creates a scanner for another thread, sharing this one's lowered automaton and
+     * analysis but with a DFA cache of its own
+     *
+     * @return the new scanner
+     */
+    FileScanner copy() {
+        return new FileScanner(lowered, classes, literal);
+    }
+
+    /**
+     * Counts the lines of a file matched by the pattern
+     *
+     * @param file the file to scan
+     * @return the number of matching lines
+     * @throws IOException if the file cannot be read
+     */
+    public long count(File file) throws IOException {
+        final long[] count = new long[1];
+        scan(file, new MatchListener() {
+            public void lineMatched(long offset, int length) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Reports every line of a file matched by the pattern
+     *
+     * @param file     the file to scan
+     * @param listener receives each matching line
+     * @throws IOException if the file cannot be read, or holds a line of 2GB or more
+     */
+    public void scan(File file, MatchListener listener) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                // Map a window and only scan the complete lines in it, widening the
+                // window for the rare line that does not fit.
+                long remaining = size - position;
+                int window = (int) Math.min(remaining, WINDOW_SIZE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                int end = linesEnd(buffer, window, remaining);
+                while (end == 0) {
+                    if (window == Integer.MAX_VALUE) {
+                        throw new IOException("Line at offset " + position + " is too long to map");
+                    }
+                    window = (int) Math.min(remaining, Math.min(2L * window, Integer.MAX_VALUE));
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                    end = linesEnd(buffer, window, remaining);
+                }
+                scanLines(buffer, end, position, listener);
+                position += end;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A literal is only searched for as bytes if its UTF-8 form is exact, which it is not
+     * when it holds half of a surrogate pair.
+     * @return the searcher, or null if the literal cannot be searched for in bytes
+     */
+    private static LiteralSearcher byteSearcher(LiteralSearcher searcher) {
+        if (searcher == null) {
+            return null;
+        }
+        String literal = searcher.getLiteral();
+        Charset utf8 = Charset.forName("UTF-8");
+        if (!new String(literal.getBytes(utf8), utf8).equals(literal)) {
+            return null;
+        }
+        return searcher;
+    }
+
+    /**
+     * Finds where the last complete line in a window ends.
+     * @return the index just past the last newline, the whole window if it reaches the end of the file, or 0
+     */
+    private static int linesEnd(ByteBuffer buffer, int window, long remaining) {
+        if (window == remaining) {
+            return window;
+        }
+        for (int i = window - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Matches every line in buffer[0, end), which must start at a line boundary.
+     * @param base file offset of the start of the buffer, added to reported offsets
+     */
+    void scanLines(ByteBuffer buffer, int end, long base, MatchListener listener) {
+        int lineStart = 0;
+        while (lineStart < end) {
+            if (literal != null) {
+                // Only a line holding the literal can match; skip to the next such line.
+                int hit = literal.indexOf(buffer, lineStart, end);
+                if (hit < 0) {
+                    break;
+                }
+                int boundary = lineStart;
+                lineStart = hit;
+                while (lineStart > boundary && buffer.get(lineStart - 1) != '\n') {
+                    lineStart--;
+                }
+            }
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (lineEnd < end && lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                contentEnd--;
+            }
+
+            if (matchesBytes(buffer, lineStart, contentEnd)) {
+                listener.lineMatched(base + lineStart, contentEnd - lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private boolean matchesBytes(ByteBuffer buffer, int from, int to) {
+        LazyDFA.State d = dfa.getStart();
+        for (int i = from; i < to && !d.dead; i++) {
+            d = dfa.step(d, (char) (buffer.get(i) & 0xFF));
+        }
+        return d.accepting;
+    }
+}
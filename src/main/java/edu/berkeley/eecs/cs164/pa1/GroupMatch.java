@@ -0,0 +1,74 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the spans of a match and of each of its capture groups. Group 0 is
+ * the whole match; group g is the span of the g-th parenthesized group, by opening
+ * parenthesis, the last time the match went through it. Groups the match never went
+ * through have no span.
+ */
+public final class GroupMatch {
+    private final int[] slots;
+
+    /**
+     * @param slots start then end index of each group, -1 for groups without a span
+     */
+    GroupMatch(int[] slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * @return the number of capture groups, not counting group 0
+     */
+    public int getGroupCount() {
+        return slots.length / 2 - 1;
+    }
+
+    /**
+     * @param group the number of a group, 0 for the whole match
+     * @return the index of the group's first character, or -1 if it has no span
+     */
+    public int getStart(int group) {
+        return slots[2 * group + 1] < 0 ? -1 : slots[2 * group];
+    }
+
+    /**
+     * @param group the number of a group, 0 for the whole match
+     * @return the index after the group's last character, or -1 if it has no span
+     */
+    public int getEnd(int group) {
+        return slots[2 * group] < 0 ? -1 : slots[2 * group + 1];
+    }
+
+    /**
+     * @param group the number of a group, 0 for the whole match
+     * @return the group's span, or null if it has none
+     */
+    public Match group(int group) {
+        int start = getStart(group);
+        return start < 0 ? null : new Match(start, getEnd(group));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return Arrays.equals(slots, ((GroupMatch) o).slots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int g = 0; g <= getGroupCount(); g++) {
+            builder.append(g == 0 ? "" : " ").append(g).append('=').append(group(g));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * This class totals the metrics of every match it is given and publishes them as a
+ * standard MBean. Counters are striped, so simulators on many threads can share one
+ * instance without contending.
+ *
+ * {@link #register(String)} creates an instance and registers it with the platform MBean
+ * server under edu.berkeley.eecs.cs164.pa1:type=MatchMetrics,pattern=&lt;the pattern&gt;.
+ */
+public class JmxMatchMetrics implements MatchMetrics, JmxMatchMetricsMBean {
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        public long applyAsLong(long a, long b) {
+            return Math.max(a, b);
+        }
+    };
+
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder activeStates = new LongAdder();
+    private final LongAccumulator peakActiveStates = new LongAccumulator(MAX, 0);
+    private final LongAdder closureWork = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheFlushes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(MAX, 0);
+    private ObjectName name;
+
+    /**
+     * Creates metrics for a pattern and registers them with the platform MBean server
+     *
+     * @param pattern the pattern the metrics are for, used in the MBean's name
+     * @return the registered metrics
+     * @throws IllegalStateException if the MBean cannot be registered, for example because
+     *                               metrics for the same pattern already are
+     */
+    public static JmxMatchMetrics register(String pattern) {
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        try {
+            ObjectName name = new ObjectName("edu.berkeley.eecs.cs164.pa1:type=MatchMetrics,pattern="
+                    + ObjectName.quote(pattern));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metrics.name = name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics for " + pattern, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the name the metrics are registered under, or null if they are not
+     */
+    public ObjectName getName() {
+        return name;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they were registered
+     */
+    public void unregister() {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + name, e);
+        }
+        name = null;
+    }
+
+    public void statesVisited(long activeStates, int peakActiveStates, long closureWork) {
+        this.activeStates.add(activeStates);
+        this.peakActiveStates.accumulate(peakActiveStates);
+        this.closureWork.add(closureWork);
+    }
+
+    public void cacheUsed(int hits, int misses, int flushes) {
+        cacheHits.add(hits);
+        cacheMisses.add(misses);
+        cacheFlushes.add(flushes);
+    }
+
+    public void matchCompleted(int characters, long elapsedNanos) {
+        matches.increment();
+        this.characters.add(characters);
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public long getMatchCount() {
+        return matches.sum();
+    }
+
+    public long getCharacterCount() {
+        return characters.sum();
+    }
+
+    public long getActiveStateTotal() {
+        return activeStates.sum();
+    }
+
+    public long getPeakActiveStates() {
+        return peakActiveStates.get();
+    }
+
+    public long getClosureWork() {
+        return closureWork.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getCacheFlushes() {
+        return cacheFlushes.sum();
+    }
+
+    public long getTotalMatchNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxMatchNanos() {
+        return maxNanos.get();
+    }
+
+    public double getAverageMatchNanos() {
+        long count = matches.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    public void reset() {
+        matches.reset();
+        characters.reset();
+        activeStates.reset();
+        peakActiveStates.reset();
+        closureWork.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        cacheFlushes.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
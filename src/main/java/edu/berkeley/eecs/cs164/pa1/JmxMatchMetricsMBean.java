@@ -0,0 +1,33 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * The management interface of {@link JmxMatchMetrics}
+ */
+public interface JmxMatchMetricsMBean {
+    long getMatchCount();
+
+    long getCharacterCount();
+
+    long getActiveStateTotal();
+
+    long getPeakActiveStates();
+
+    long getClosureWork();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getCacheFlushes();
+
+    long getTotalMatchNanos();
+
+    long getMaxMatchNanos();
+
+    double getAverageMatchNanos();
+
+    /**
+     * Zeroes every counter
+     */
+    void reset();
+}
@@ -0,0 +1,188 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class determinizes an NFA on demand. Each DFA state stands for a set of NFA
+ * states and is only created, along with its outgoing transitions, the first time the
+ * simulation reaches it. Later visits just follow the cached transition.
+ *
+ * The number of cached states is capped. When the cap is hit the whole cache is thrown
+ * away and rebuilt from the current position on, so memory stays bounded even for
+ * patterns whose full DFA would be exponential. Instances are not thread-safe.
+ *
+ * Transitions are cached per character class (see {@link CharClasses}) rather than per
+ * character: characters every edge label treats alike always lead to the same state, so
+ * each state holds one column per class, and one step determinizes the transition for a
+ * whole class at once.
+ */
+public class LazyDFA {
+    /**
+     * Cap used by simulators that do not ask for a specific one
+     */
+    public static final int DEFAULT_MAX_STATES = 4096;
+
+    private final AutomatonState accept;
+    private final CharClasses classes;
+    private final Set<AutomatonState> startSet;
+    private final int maxStates;
+    private final Map<Set<AutomatonState>, State> states = new HashMap<Set<AutomatonState>, State>();
+    private final EpsilonClosure closure = new EpsilonClosure();
+    private State start;
+    private int generation;
+    private int flushes;
+    private long misses;
+
+    /**
+     * Create a new lazy DFA for the given NFA
+     *
+     * @param nfa       the nfa to determinize
+     * @param maxStates the number of DFA states to keep before flushing the cache
+     */
+    public LazyDFA(Automaton nfa, int maxStates) {
+        this(nfa, CharClasses.of(CompiledAutomaton.compile(nfa)), maxStates);
+    }
+
+    /**
+     * Create a new lazy DFA over character classes computed beforehand
+     *
+     * @param nfa       the nfa to determinize
+     * @param classes   the character classes of nfa
+     * @param maxStates the number of DFA states to keep before flushing the cache
+     */
+    LazyDFA(Automaton nfa, CharClasses classes, int maxStates) {
+        if (maxStates < 1) {
+            throw new IllegalArgumentException("DFA cache needs room for at least one state: " + maxStates);
+        }
+        this.accept = nfa.getOut();
+        this.classes = classes;
+        this.maxStates = maxStates;
+
+        this.startSet = closure.closure(Collections.singleton(nfa.getStart()));
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted by the NFA, else false
+     */
+    public boolean matches(CharSequence text) {
+        State d = getStart();
+        for (int i = 0; i < text.length() && !d.dead; i++) {
+            d = step(d, text.charAt(i));
+        }
+        return d.accepting;
+    }
+
+    /**
+     * @return the number of DFA states currently cached
+     */
+    public int getStateCount() {
+        return states.size();
+    }
+
+    /**
+     * @return the number of times the cache has been thrown away because it was full
+     */
+    public int getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * @return the number of transitions determinized so far, because they were not cached
+     */
+    long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return the number of epsilon edges followed while determinizing so far
+     */
+    long getClosureWork() {
+        return closure.getEdgesWalked();
+    }
+
+    /**
+     * @return the number of columns each cached state has
+     */
+    public int getClassCount() {
+        return classes.getClassCount();
+    }
+
+    State getStart() {
+        if (start == null || start.generation != generation) {
+            start = intern(startSet);
+        }
+        return start;
+    }
+
+    /**
+     * Follows the transition on c out of from, determinizing it first if it has not been seen.
+     * @param from current DFA state
+     * @param c character to transition with
+     * @return the DFA state reached
+     */
+    State step(State from, char c) {
+        State next = from.get(c);
+        if (next != null) {
+            return next;
+        }
+
+        misses++;
+        next = intern(closure.step(from.nfaStates, c));
+        // A flush while interning leaves from stale, so it must not point into the new cache.
+        if (from.generation == generation) {
+            from.put(c, next);
+        }
+        return next;
+    }
+
+    private State intern(Set<AutomatonState> nfaStates) {
+        State state = states.get(nfaStates);
+        if (state == null) {
+            if (states.size() >= maxStates) {
+                flush();
+            }
+            state = new State(nfaStates, nfaStates.contains(accept), generation, classes);
+            states.put(nfaStates, state);
+        }
+        return state;
+    }
+
+    private void flush() {
+        states.clear();
+        start = null;
+        generation++;
+        flushes++;
+    }
+
+    /**
+     * A single DFA state, with a flat array of transitions indexed by character class.
+     */
+    static class State {
+        final Set<AutomatonState> nfaStates;
+        final boolean accepting;
+        final boolean dead;
+        final int generation;
+        private final CharClasses classes;
+        private final State[] next;
+
+        State(Set<AutomatonState> nfaStates, boolean accepting, int generation, CharClasses classes) {
+            this.nfaStates = nfaStates;
+            this.accepting = accepting;
+            this.dead = nfaStates.isEmpty();
+            this.generation = generation;
+            this.classes = classes;
+            this.next = new State[classes.getClassCount()];
+        }
+
+        State get(char c) {
+            return next[classes.classOf(c)];
+        }
+
+        void put(char c, State state) {
+            next[classes.classOf(c)] = state;
+        }
+    }
+}
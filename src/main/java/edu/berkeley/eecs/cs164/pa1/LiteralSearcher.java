@@ -0,0 +1,113 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * This class finds a fixed string in text with the Boyer-Moore-Horspool algorithm. Each
+ * attempt compares the last character of the window first; on a mismatch the window
+ * jumps ahead by the distance from that character's last occurrence in the literal to
+ * the literal's end, so long literals skip most of the input unread.
+ *
+ * Characters are searched in {@link CharSequence}s, and the UTF-8 encoding of the
+ * literal in {@link ByteBuffer}s. The char shift table is indexed by the low byte of a
+ * character and keeps the smallest shift of the characters sharing it, which is always
+ * safe. Searchers are immutable and can be shared between threads.
+ */
+public final class LiteralSearcher {
+    private final String literal;
+    private final byte[] bytes;
+    private final int[] charShift = new int[256];
+    private final int[] byteShift = new int[256];
+
+    /**
+     * Create a new searcher for a literal
+     *
+     * @param literal the string to search for, not empty
+     */
+    public LiteralSearcher(String literal) {
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Cannot search for an empty literal");
+        }
+        this.literal = literal;
+        this.bytes = literal.getBytes(Charset.forName("UTF-8"));
+
+        int m = literal.length();
+        Arrays.fill(charShift, m);
+        for (int i = 0; i < m - 1; i++) {
+            charShift[literal.charAt(i) & 0xFF] = m - 1 - i;
+        }
+        int k = bytes.length;
+        Arrays.fill(byteShift, k);
+        for (int i = 0; i < k - 1; i++) {
+            byteShift[bytes[i] & 0xFF] = k - 1 - i;
+        }
+    }
+
+    /**
+     * @return the string searched for
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * Finds the first occurrence of the literal in a text at or after an index
+     *
+     * @param text the text to search
+     * @param from the index to start at
+     * @return the index the occurrence starts at, or -1 if there is none
+     */
+    public int indexOf(CharSequence text, int from) {
+        int m = literal.length();
+        char last = literal.charAt(m - 1);
+        for (int i = Math.max(from, 0) + m - 1; i < text.length(); ) {
+            char c = text.charAt(i);
+            if (c == last && matchesAt(text, i - m + 1)) {
+                return i - m + 1;
+            }
+            i += charShift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first occurrence of the UTF-8 encoded literal in buffer[from, to)
+     *
+     * @param buffer the bytes to search, read with absolute gets
+     * @param from   the index to start at
+     * @param to     the index to stop before
+     * @return the index the occurrence starts at, or -1 if there is none
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        int k = bytes.length;
+        byte last = bytes[k - 1];
+        for (int i = from + k - 1; i < to; ) {
+            byte b = buffer.get(i);
+            if (b == last && matchesAt(buffer, i - k + 1)) {
+                return i - k + 1;
+            }
+            i += byteShift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(CharSequence text, int start) {
+        for (int j = literal.length() - 2; j >= 0; j--) {
+            if (text.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesAt(ByteBuffer buffer, int start) {
+        for (int j = bytes.length - 2; j >= 0; j--) {
+            if (buffer.get(start + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,247 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class finds the literal strings every match of an automaton has to contain, so
+ * searches can jump between occurrences of them with a {@link LiteralSearcher} instead of
+ * running the automaton over every character.
+ *
+ * The analysis works on the dominators of the accept state: the states every accepting
+ * path passes through. They form a chain from the start state to the accept state. Where
+ * a state on the chain has a single live outgoing edge, every accepting path takes it, so
+ * the edge's character (if it is a single character) is read right after the previous
+ * one. Runs of such edges spell out required literals; the run beginning at the start
+ * state is a prefix of every match.
+ */
+public final class Literals {
+    private static final Literals NONE = new Literals("", "");
+    private static final int EPSILON = -1;
+    private static final int NOT_FORCED = -2;
+
+    private final String prefix;
+    private final String required;
+    private final LiteralSearcher prefixSearcher;
+    private final LiteralSearcher requiredSearcher;
+
+    private Literals(String prefix, String required) {
+        this.prefix = prefix;
+        this.required = required;
+        this.prefixSearcher = prefix.isEmpty() ? null : new LiteralSearcher(prefix);
+        this.requiredSearcher = required.isEmpty() ? null : new LiteralSearcher(required);
+    }
+
+    /**
+     * Computes the required literals of a compiled automaton
+     *
+     * @param program the automaton to analyze
+     * @return the literals, empty if there are none
+     */
+    public static Literals of(CompiledAutomaton program) {
+        if (program.accept < 0) {
+            return NONE;
+        }
+        int[] chain = dominatorChain(program);
+
+        String prefix = null;
+        String required = "";
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i + 1 < chain.length; i++) {
+            int c = forcedChar(program, chain[i], chain[i + 1]);
+            if (c == EPSILON) {
+                continue;
+            }
+            if (c >= 0) {
+                run.append((char) c);
+                continue;
+            }
+            if (prefix == null) {
+                prefix = run.toString();
+            }
+            if (run.length() > required.length()) {
+                required = run.toString();
+            }
+            run.setLength(0);
+        }
+        if (prefix == null) {
+            prefix = run.toString();
+        }
+        if (run.length() > required.length()) {
+            required = run.toString();
+        }
+        return new Literals(prefix, required);
+    }
+
+    /**
+     * @return a string every match starts with, possibly empty
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the longest string found that every match contains, possibly empty
+     */
+    public String getRequired() {
+        return required;
+    }
+
+    /**
+     * @return a searcher for the prefix, or null if it is empty
+     */
+    public LiteralSearcher getPrefixSearcher() {
+        return prefixSearcher;
+    }
+
+    /**
+     * @return a searcher for the required literal, or null if it is empty
+     */
+    public LiteralSearcher getRequiredSearcher() {
+        return requiredSearcher;
+    }
+
+    @Override
+    public String toString() {
+        return "prefix \"" + prefix + "\", required \"" + required + "\"";
+    }
+
+    /**
+     * @return the character read between two consecutive dominators, EPSILON if they are
+     * joined by an epsilon edge, or NOT_FORCED if the way between them can vary
+     */
+    private static int forcedChar(CompiledAutomaton p, int from, int to) {
+        int edges = 0;
+        int result = NOT_FORCED;
+        for (int e = p.edgeStart[from]; e < p.edgeStart[from + 1]; e++) {
+            if (p.canReachAccept(p.edgeTarget[e])) {
+                edges++;
+                result = p.edgeLo[e] == p.edgeHi[e] && p.edgeTarget[e] == to ? p.edgeLo[e] : NOT_FORCED;
+            }
+        }
+        for (int e = p.epsStart[from]; e < p.epsStart[from + 1]; e++) {
+            if (p.canReachAccept(p.epsTarget[e])) {
+                edges++;
+                result = p.epsTarget[e] == to ? EPSILON : NOT_FORCED;
+            }
+        }
+        return edges == 1 ? result : NOT_FORCED;
+    }
+
+    /**
+     * Computes the dominators of the accept state over the live part of the automaton with
+     * the iterative algorithm of Cooper, Harvey and Kennedy.
+     * @return the dominators of the accept state, from the start state to the accept state
+     */
+    private static int[] dominatorChain(CompiledAutomaton p) {
+        int n = p.stateCount;
+
+        // Number live states in reverse postorder of a depth-first search.
+        int[] postorder = new int[n];
+        Arrays.fill(postorder, -1);
+        int[] order = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+        int top = 0;
+        stack[top++] = p.start;
+        visited[p.start] = true;
+        while (top > 0) {
+            int s = stack[top - 1];
+            int t = nextSuccessor(p, s, cursor);
+            if (t < 0) {
+                top--;
+                postorder[s] = count;
+                order[count++] = s;
+            } else if (!visited[t] && p.canReachAccept(t)) {
+                visited[t] = true;
+                stack[top++] = t;
+            }
+        }
+
+        List<List<Integer>> predecessors = new ArrayList<List<Integer>>(n);
+        for (int s = 0; s < n; s++) {
+            predecessors.add(new ArrayList<Integer>());
+        }
+        for (int s = 0; s < n; s++) {
+            if (postorder[s] < 0) {
+                continue;
+            }
+            for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                if (postorder[p.edgeTarget[e]] >= 0) {
+                    predecessors.get(p.edgeTarget[e]).add(s);
+                }
+            }
+            for (int e = p.epsStart[s]; e < p.epsStart[s + 1]; e++) {
+                if (postorder[p.epsTarget[e]] >= 0) {
+                    predecessors.get(p.epsTarget[e]).add(s);
+                }
+            }
+        }
+
+        int[] idom = new int[n];
+        Arrays.fill(idom, -1);
+        idom[p.start] = p.start;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = count - 1; i >= 0; i--) {
+                int s = order[i];
+                if (s == p.start) {
+                    continue;
+                }
+                int dominator = -1;
+                for (int pred : predecessors.get(s)) {
+                    if (idom[pred] >= 0) {
+                        dominator = dominator < 0 ? pred : intersect(idom, postorder, pred, dominator);
+                    }
+                }
+                if (idom[s] != dominator) {
+                    idom[s] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        Deque<Integer> chain = new ArrayDeque<Integer>();
+        for (int s = p.accept; s != p.start; s = idom[s]) {
+            chain.push(s);
+        }
+        chain.push(p.start);
+        int[] result = new int[chain.size()];
+        int i = 0;
+        for (int s : chain) {
+            result[i++] = s;
+        }
+        return result;
+    }
+
+    private static int intersect(int[] idom, int[] postorder, int a, int b) {
+        while (a != b) {
+            while (postorder[a] < postorder[b]) {
+                a = idom[a];
+            }
+            while (postorder[b] < postorder[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Steps through the character then epsilon edges of s, one call at a time.
+     * @return the next successor, or -1 once all have been returned
+     */
+    private static int nextSuccessor(CompiledAutomaton p, int s, int[] cursor) {
+        int edges = p.edgeStart[s + 1] - p.edgeStart[s];
+        int i = cursor[s]++;
+        if (i < edges) {
+            return p.edgeTarget[p.edgeStart[s] + i];
+        }
+        i -= edges;
+        if (i < p.epsStart[s + 1] - p.epsStart[s]) {
+            return p.epsTarget[p.epsStart[s] + i];
+        }
+        return -1;
+    }
+}
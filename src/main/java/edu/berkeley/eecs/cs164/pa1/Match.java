@@ -0,0 +1,56 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * This class is the span of text matched by a search, from its start index up to but
+ * not including its end index
+ */
+public final class Match {
+    private final int start;
+    private final int end;
+
+    public Match(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the index of the first matched character
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index after the last matched character
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of characters matched
+     */
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Match that = (Match) o;
+
+        return start == that.start && end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start + end;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,37 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * This interface receives what each match of an instrumented {@link NFASimulator} cost.
+ * Every match reports {@link #matchCompleted(int, long)}, preceded by the calls that
+ * apply to how it ran. Implementations may be called from many threads at once.
+ *
+ * See {@link JmxMatchMetrics} for an implementation that publishes totals over JMX.
+ */
+public interface MatchMetrics {
+    /**
+     * Reports the state sets a match went through
+     *
+     * @param activeStates     the sum of the sizes of the state sets after every character
+     * @param peakActiveStates the size of the largest state set
+     * @param closureWork      the number of epsilon edges followed while computing closures,
+     *                         0 where closures are precomputed
+     */
+    void statesVisited(long activeStates, int peakActiveStates, long closureWork);
+
+    /**
+     * Reports how a match used the DFA cache
+     *
+     * @param hits    transitions found in the cache
+     * @param misses  transitions that had to be determinized
+     * @param flushes times the cache was thrown away during the match
+     */
+    void cacheUsed(int hits, int misses, int flushes);
+
+    /**
+     * Reports that a match is done
+     *
+     * @param characters   the number of characters stepped over
+     * @param elapsedNanos the wall time the match took
+     */
+    void matchCompleted(int characters, long elapsedNanos);
+}
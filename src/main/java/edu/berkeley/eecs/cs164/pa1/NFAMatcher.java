@@ -0,0 +1,478 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class simulates a compiled NFA Pike-VM style, keeping the current and next state
+ * sets in two preallocated sparse sets that are swapped after every character. Epsilon
+ * closures are followed with an explicit int stack. After construction no objects are
+ * allocated, so a matcher can be reused for any number of inputs.
+ *
+ * Besides {@link #matches(CharSequence)}, input can be streamed in: call {@link #reset()},
+ * feed any number of chunks, and ask {@link #isAccepted()} at any point. States that can
+ * no longer reach the accept state are dropped as soon as they are entered, so once
+ * {@link #canAccept()} turns false the rest of the input is skipped.
+ *
+ * {@link #find(CharSequence, int)} searches for the pattern inside a text instead. It
+ * injects the start state at every position while no match has been seen, tagging each
+ * state with the position its thread started at, and reports the leftmost-longest match
+ * in one pass. Searching resets the matcher. Input that no match can start in is skipped
+ * with a {@link LiteralSearcher}: a text without the required literal of the pattern is
+ * rejected outright, and while no thread is alive the search jumps straight to the next
+ * occurrence of the literal prefix. See {@link Literals}.
+ *
+ * A matcher made by an instrumented {@link NFASimulator} reports each whole-text match
+ * and each search to its {@link MatchMetrics}; streamed input is not reported.
+ *
+ * Matchers hold mutable scratch state and are not thread-safe; keep one per thread.
+ * The {@link CompiledAutomaton} they run over can be shared freely.
+ */
+public class NFAMatcher {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CompiledAutomaton program;
+    private final int[] stack;
+    private final int[] startClosure;
+    private final MatchMetrics metrics;
+    private SparseSet current;
+    private SparseSet next;
+    private int[] currentOrigins;
+    private int[] nextOrigins;
+    private char[] readBuffer;
+    private ByteBuffer byteBuffer;
+    private CharBuffer charBuffer;
+    private long started;
+    private int characters;
+    private long activeStates;
+    private int peakActiveStates;
+    private long closureWork;
+
+    /**
+     * Create a new matcher for a compiled NFA
+     *
+     * @param program the compiled nfa to simulate
+     */
+    public NFAMatcher(CompiledAutomaton program) {
+        this(program, null);
+    }
+
+    /**
+     * @param metrics receives the cost of each match and search, or null for none
+     */
+    NFAMatcher(CompiledAutomaton program, MatchMetrics metrics) {
+        this.program = program;
+        this.metrics = metrics;
+        this.stack = new int[program.stateCount];
+        this.current = new SparseSet(program.stateCount);
+        this.next = new SparseSet(program.stateCount);
+        this.currentOrigins = new int[program.stateCount];
+        this.nextOrigins = new int[program.stateCount];
+        current.clear();
+        addClosure(current, program.start);
+        this.startClosure = new int[current.size()];
+        for (int i = 0; i < startClosure.length; i++) {
+            startClosure[i] = current.get(i);
+        }
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted by the NFA, else false
+     */
+    public boolean matches(CharSequence text) {
+        begin();
+        reset();
+        feed(text);
+        return report(isAccepted());
+    }
+
+    /**
+     * Determines whether or not a slice of a character array is accepted by the NFA
+     *
+     * @param chars  array holding the text
+     * @param offset index of the first character of the text
+     * @param length number of characters in the text
+     * @return true if the text is accepted by the NFA, else false
+     */
+    public boolean matches(char[] chars, int offset, int length) {
+        begin();
+        reset();
+        feed(chars, offset, length);
+        return report(isAccepted());
+    }
+
+    /**
+     * Finds the leftmost-longest match of the NFA in a text, starting the search at a
+     * given index. Of the matches starting earliest the longest is returned.
+     *
+     * @param text the text to search
+     * @param from the index to start searching at
+     * @return the match, or null if the NFA matches nowhere at or after from
+     */
+    public Match find(CharSequence text, int from) {
+        if (from < 0 || from > text.length()) {
+            throw new IndexOutOfBoundsException("Search start " + from + " outside text of length " + text.length());
+        }
+        begin();
+        CompiledAutomaton p = program;
+        Literals literals = p.getLiterals();
+        LiteralSearcher required = literals.getRequiredSearcher();
+        if (required != null && required.indexOf(text, from) < 0) {
+            report(false);
+            return null;
+        }
+        LiteralSearcher prefix = literals.getPrefixSearcher();
+
+        current.clear();
+        int matchStart = -1;
+        int matchEnd = -1;
+        for (int position = from; ; position++) {
+            if (prefix != null && matchStart < 0 && current.isEmpty()) {
+                // No thread is alive, so the next match can only start at the prefix.
+                position = prefix.indexOf(text, position);
+                if (position < 0) {
+                    break;
+                }
+            }
+            // Threads are kept in order of their origin, earliest first, so a state reached
+            // by several threads keeps the earliest origin. New threads start after all
+            // the others, and only until a match is found, since they would start later.
+            if (matchStart < 0) {
+                addThread(current, currentOrigins, p.start, position);
+            }
+            if (p.accept >= 0 && current.contains(p.accept)) {
+                matchStart = currentOrigins[p.accept];
+                matchEnd = position;
+                // Threads starting after this match can only find matches further right.
+                int keep = 0;
+                while (keep < current.size() && currentOrigins[current.get(keep)] <= matchStart) {
+                    keep++;
+                }
+                current.truncate(keep);
+            }
+            if (position == text.length() || (current.isEmpty() && matchStart >= 0)) {
+                break;
+            }
+            stepThreads(text.charAt(position));
+        }
+        report(matchStart >= 0);
+        return matchStart < 0 ? null : new Match(matchStart, matchEnd);
+    }
+
+    /**
+     * Finds every non-overlapping leftmost-longest match of the NFA in a text. Each search
+     * resumes where the previous match ended, or one character later after an empty match.
+     *
+     * @param text the text to search
+     * @return the matches, in order
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<Match>();
+        int from = 0;
+        while (from <= text.length()) {
+            Match match = find(text, from);
+            if (match == null) {
+                break;
+            }
+            matches.add(match);
+            from = match.getEnd() == match.getStart() ? match.getEnd() + 1 : match.getEnd();
+        }
+        return matches;
+    }
+
+    /**
+     * Rewinds the matcher to the start of a new input. The closure of the start state is
+     * computed once, so rewinding only copies it back in.
+     */
+    public void reset() {
+        current.clear();
+        for (int s : startClosure) {
+            current.add(s);
+        }
+    }
+
+    /**
+     * @return true if the input fed since the last reset is accepted by the NFA
+     */
+    public boolean isAccepted() {
+        return program.accept >= 0 && current.contains(program.accept);
+    }
+
+    /**
+     * @return true if some continuation of the input fed so far could still be accepted
+     */
+    public boolean canAccept() {
+        return !current.isEmpty();
+    }
+
+    /**
+     * Feeds a single character
+     *
+     * @param ch the next input character
+     * @return true if the input can still be accepted
+     */
+    public boolean feed(char ch) {
+        if (!current.isEmpty()) {
+            step(ch);
+        }
+        return canAccept();
+    }
+
+    /**
+     * Feeds a slice of a character array
+     *
+     * @param chars  array holding the input
+     * @param offset index of the first character to feed
+     * @param length number of characters to feed
+     * @return true if the input can still be accepted
+     */
+    public boolean feed(char[] chars, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end && !current.isEmpty(); i++) {
+            step(chars[i]);
+        }
+        return canAccept();
+    }
+
+    /**
+     * Feeds a character sequence
+     *
+     * @param text the next input characters
+     * @return true if the input can still be accepted
+     */
+    public boolean feed(CharSequence text) {
+        for (int i = 0; i < text.length() && !current.isEmpty(); i++) {
+            step(text.charAt(i));
+        }
+        return canAccept();
+    }
+
+    /**
+     * Feeds the remaining characters of a buffer, advancing its position past every
+     * character consumed. Feeding stops early, leaving the rest of the buffer untouched,
+     * once the input can no longer be accepted.
+     *
+     * @param chars the next input characters
+     * @return true if the input can still be accepted
+     */
+    public boolean feed(CharBuffer chars) {
+        if (chars.hasArray()) {
+            char[] array = chars.array();
+            int base = chars.arrayOffset();
+            int i = chars.position();
+            for (; i < chars.limit() && !current.isEmpty(); i++) {
+                step(array[base + i]);
+            }
+            chars.position(i);
+        } else {
+            while (chars.hasRemaining() && !current.isEmpty()) {
+                step(chars.get());
+            }
+        }
+        return canAccept();
+    }
+
+    /**
+     * Feeds everything a reader produces, stopping early once the input can no longer be
+     * accepted. The reader is not closed.
+     *
+     * @param in the reader to consume
+     * @return true if the input can still be accepted
+     * @throws IOException if reading fails
+     */
+    public boolean feed(Reader in) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = new char[BUFFER_SIZE];
+        }
+        int n;
+        while (!current.isEmpty() && (n = in.read(readBuffer)) >= 0) {
+            feed(readBuffer, 0, n);
+        }
+        return canAccept();
+    }
+
+    /**
+     * Decodes and feeds everything a channel produces, stopping early once the input can
+     * no longer be accepted. The decoder is reset first; the channel is not closed.
+     *
+     * @param channel the channel to consume
+     * @param decoder the decoder for the channel's charset
+     * @return true if the input can still be accepted
+     * @throws IOException if reading fails or the bytes are malformed for the decoder
+     */
+    public boolean feed(ReadableByteChannel channel, CharsetDecoder decoder) throws IOException {
+        if (byteBuffer == null) {
+            byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        ByteBuffer bytes = byteBuffer;
+        CharBuffer chars = charBuffer;
+        bytes.clear();
+        chars.clear();
+        decoder.reset();
+
+        while (!current.isEmpty()) {
+            boolean eof = channel.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, eof);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                drain(chars);
+            } while (result.isOverflow());
+            bytes.compact();
+
+            if (eof) {
+                do {
+                    result = decoder.flush(chars);
+                    drain(chars);
+                } while (result.isOverflow());
+                break;
+            }
+        }
+        return canAccept();
+    }
+
+    /**
+     * Starts counting the cost of a match, if there are metrics to report it to.
+     */
+    private void begin() {
+        if (metrics != null) {
+            started = System.nanoTime();
+            characters = 0;
+            activeStates = 0;
+            peakActiveStates = 0;
+            closureWork = 0;
+        }
+    }
+
+    /**
+     * Reports the cost counted since {@link #begin()}, if there are metrics.
+     * @return result, for returning straight on
+     */
+    private boolean report(boolean result) {
+        if (metrics != null) {
+            metrics.statesVisited(activeStates, peakActiveStates, closureWork);
+            metrics.matchCompleted(characters, System.nanoTime() - started);
+        }
+        return result;
+    }
+
+    /**
+     * Counts a step into the current set.
+     */
+    private void stepped() {
+        characters++;
+        activeStates += current.size();
+        peakActiveStates = Math.max(peakActiveStates, current.size());
+    }
+
+    private void drain(CharBuffer chars) {
+        chars.flip();
+        feed(chars);
+        chars.clear();
+    }
+
+    /**
+     * Moves every live state across the edges whose range holds ch, then swaps the state sets.
+     * @param ch character to transition with
+     */
+    private void step(char ch) {
+        CompiledAutomaton p = program;
+        SparseSet d = current;
+        next.clear();
+        for (int i = 0; i < d.size(); i++) {
+            int s = d.get(i);
+            for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                if (p.edgeLo[e] <= ch && ch <= p.edgeHi[e]) {
+                    addClosure(next, p.edgeTarget[e]);
+                }
+            }
+        }
+        current = next;
+        next = d;
+        if (metrics != null) {
+            stepped();
+        }
+    }
+
+    /**
+     * Moves every thread across the edges whose range holds ch, keeping their order and
+     * origins, then swaps the state sets.
+     * @param ch character to transition with
+     */
+    private void stepThreads(char ch) {
+        CompiledAutomaton p = program;
+        SparseSet d = current;
+        int[] origins = currentOrigins;
+        next.clear();
+        for (int i = 0; i < d.size(); i++) {
+            int s = d.get(i);
+            for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                if (p.edgeLo[e] <= ch && ch <= p.edgeHi[e]) {
+                    addThread(next, nextOrigins, p.edgeTarget[e], origins[s]);
+                }
+            }
+        }
+        current = next;
+        next = d;
+        currentOrigins = nextOrigins;
+        nextOrigins = origins;
+        if (metrics != null) {
+            stepped();
+        }
+    }
+
+    /**
+     * Adds the closure of a state as for {@link #addClosure(SparseSet, int)}, tagging
+     * every state it adds with the origin of the thread.
+     */
+    private void addThread(SparseSet set, int[] origins, int state, int origin) {
+        int added = set.size();
+        addClosure(set, state);
+        for (int i = added; i < set.size(); i++) {
+            origins[set.get(i)] = origin;
+        }
+    }
+
+    /**
+     * Adds a state and everything reachable from it by epsilon moves. The set itself
+     * serves as the visited marks, so each state is expanded at most once per step.
+     * States that cannot reach the accept state are left out, along with everything
+     * only reachable through them.
+     * @param set the set to add to
+     * @param state the state to start from
+     */
+    private void addClosure(SparseSet set, int state) {
+        CompiledAutomaton p = program;
+        if (!p.canReachAccept(state) || !set.add(state)) {
+            return;
+        }
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int s = stack[--top];
+            for (int i = p.epsStart[s]; i < p.epsStart[s + 1]; i++) {
+                int t = p.epsTarget[i];
+                if (p.canReachAccept(t) && set.add(t)) {
+                    stack[top++] = t;
+                }
+            }
+            if (metrics != null) {
+                closureWork += p.epsStart[s + 1] - p.epsStart[s];
+            }
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class shrinks an NFA built by {@link RegexParser} before it is simulated. Thompson
+ * construction leaves many states whose only job is to hold epsilon edges; this pass
+ *
+ * <ol>
+ * <li>removes epsilon edges, giving each state the character edges of its closure,</li>
+ * <li>drops states that are unreachable from the start or cannot reach the accept state,</li>
+ * <li>merges states with the same future (same acceptance, same edges into the same
+ * merged states) by partition refinement.</li>
+ * </ol>
+ *
+ * The result keeps a single output state. Accepting states that still have outgoing
+ * edges reach it by one epsilon edge each, so every closure is at most one step deep.
+ * State and edge counts before and after are available from {@link #getBefore()} and
+ * {@link #getAfter()}.
+ */
+public class NFAOptimizer {
+    private final Stats before;
+    private final Stats after;
+    private final Automaton result;
+
+    /**
+     * Optimizes an NFA
+     *
+     * @param nfa the nfa to optimize, which is left unchanged
+     */
+    public NFAOptimizer(Automaton nfa) {
+        CompiledAutomaton program = CompiledAutomaton.compile(nfa);
+        this.before = Stats.of(program);
+        this.result = build(program);
+        this.after = Stats.of(CompiledAutomaton.compile(result));
+    }
+
+    /**
+     * Optimizes an NFA
+     *
+     * @param nfa the nfa to optimize, which is left unchanged
+     * @return a frozen NFA accepting the same language
+     */
+    public static Automaton optimize(Automaton nfa) {
+        return new NFAOptimizer(nfa).getResult();
+    }
+
+    /**
+     * @return the optimized, frozen NFA
+     */
+    public Automaton getResult() {
+        return result;
+    }
+
+    /**
+     * @return the counts of the NFA as it was passed in
+     */
+    public Stats getBefore() {
+        return before;
+    }
+
+    /**
+     * @return the counts of the optimized NFA
+     */
+    public Stats getAfter() {
+        return after;
+    }
+
+    private static Automaton build(CompiledAutomaton p) {
+        int n = p.stateCount;
+
+        // Only the start state and targets of character edges are ever entered by a
+        // character move; every other state just contributes to their closures.
+        boolean[] entered = new boolean[n];
+        entered[p.start] = true;
+        for (int target : p.edgeTarget) {
+            entered[target] = true;
+        }
+
+        long[][] edges = new long[n][];
+        boolean[] accepting = new boolean[n];
+        SparseSet closure = new SparseSet(n);
+        int[] stack = new int[n];
+        for (int s = 0; s < n; s++) {
+            if (entered[s]) {
+                edges[s] = closureEdges(p, s, closure, stack);
+                accepting[s] = p.accept >= 0 && closure.contains(p.accept);
+            }
+        }
+
+        boolean[] live = liveStates(p.start, edges, accepting);
+        if (!live[p.start]) {
+            // Nothing is accepted; an output state nothing leads to says exactly that.
+            return new Automaton(new AutomatonState(), new AutomatonState()).freeze();
+        }
+        for (int s = 0; s < n; s++) {
+            if (live[s]) {
+                edges[s] = dropDeadTargets(edges[s], live);
+            }
+        }
+
+        int[] block = refine(edges, accepting, live);
+        return toAutomaton(p.start, edges, accepting, live, block);
+    }
+
+    /**
+     * Collects the character edges of every state in the closure of s, sorted and
+     * without duplicates, each packed as lo &lt;&lt; 48 | hi &lt;&lt; 32 | target.
+     */
+    private static long[] closureEdges(CompiledAutomaton p, int s, SparseSet closure, int[] stack) {
+        closure.clear();
+        closure.add(s);
+        int top = 0;
+        stack[top++] = s;
+        while (top > 0) {
+            int u = stack[--top];
+            for (int i = p.epsStart[u]; i < p.epsStart[u + 1]; i++) {
+                if (closure.add(p.epsTarget[i])) {
+                    stack[top++] = p.epsTarget[i];
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < closure.size(); i++) {
+            int u = closure.get(i);
+            count += p.edgeStart[u + 1] - p.edgeStart[u];
+        }
+        long[] result = new long[count];
+        count = 0;
+        for (int i = 0; i < closure.size(); i++) {
+            int u = closure.get(i);
+            for (int e = p.edgeStart[u]; e < p.edgeStart[u + 1]; e++) {
+                result[count++] = edge(p.edgeLo[e], p.edgeHi[e], p.edgeTarget[e]);
+            }
+        }
+        return unique(result, result.length);
+    }
+
+    /**
+     * @return states reachable from start that can also reach an accepting state
+     */
+    private static boolean[] liveStates(int start, long[][] edges, boolean[] accepting) {
+        int n = edges.length;
+        boolean[] reachable = new boolean[n];
+        int[] stack = new int[n];
+        int top = 0;
+        reachable[start] = true;
+        stack[top++] = start;
+        while (top > 0) {
+            int s = stack[--top];
+            for (long e : edges[s]) {
+                int t = target(e);
+                if (!reachable[t]) {
+                    reachable[t] = true;
+                    stack[top++] = t;
+                }
+            }
+        }
+
+        // Search backwards from the accepting states over the reversed reachable edges.
+        int[] inStart = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            if (reachable[s]) {
+                for (long e : edges[s]) {
+                    inStart[target(e) + 1]++;
+                }
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            inStart[s + 1] += inStart[s];
+        }
+        int[] fill = Arrays.copyOf(inStart, n);
+        int[] inSource = new int[inStart[n]];
+        for (int s = 0; s < n; s++) {
+            if (reachable[s]) {
+                for (long e : edges[s]) {
+                    inSource[fill[target(e)]++] = s;
+                }
+            }
+        }
+
+        boolean[] live = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            if (reachable[s] && accepting[s]) {
+                live[s] = true;
+                stack[top++] = s;
+            }
+        }
+        while (top > 0) {
+            int t = stack[--top];
+            for (int i = inStart[t]; i < inStart[t + 1]; i++) {
+                if (!live[inSource[i]]) {
+                    live[inSource[i]] = true;
+                    stack[top++] = inSource[i];
+                }
+            }
+        }
+        return live;
+    }
+
+    private static long[] dropDeadTargets(long[] edges, boolean[] live) {
+        long[] result = new long[edges.length];
+        int count = 0;
+        for (long e : edges) {
+            if (live[target(e)]) {
+                result[count++] = e;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Splits live states into blocks of states with the same future. Blocks start out as
+     * accepting and non-accepting, and a block taken from the worklist is split by the
+     * ranges and target blocks of its states' edges. Only the predecessors of states that
+     * moved can split next, so only their blocks are queued again; the largest part of a
+     * split keeps the old block. A queued block is still re-read in full, so this falls
+     * short of Hopcroft's n log n bound, but blocks no split can affect are never revisited.
+     * @return the block of each live state, numbered in order of their first states
+     */
+    private static int[] refine(long[][] edges, boolean[] accepting, boolean[] live) {
+        int n = edges.length;
+
+        // inSource[inStart[t] .. inStart[t + 1]) are the live states with an edge into t.
+        int[] inStart = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            if (live[s]) {
+                for (long e : edges[s]) {
+                    inStart[target(e) + 1]++;
+                }
+            }
+        }
+        for (int s = 0; s < n; s++) {
+            inStart[s + 1] += inStart[s];
+        }
+        int[] fill = Arrays.copyOf(inStart, n);
+        int[] inSource = new int[inStart[n]];
+        for (int s = 0; s < n; s++) {
+            if (live[s]) {
+                for (long e : edges[s]) {
+                    inSource[fill[target(e)]++] = s;
+                }
+            }
+        }
+
+        // Blocks are contiguous runs of the elements array, regrouped in place on a split.
+        int[] elements = new int[n];
+        int[] block = new int[n];
+        int[] first = new int[n];
+        int[] end = new int[n];
+        int blocks = 0;
+        int size = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int begin = size;
+            for (int s = 0; s < n; s++) {
+                if (live[s] && accepting[s] == (pass == 1)) {
+                    elements[size++] = s;
+                    block[s] = blocks;
+                }
+            }
+            if (size > begin) {
+                first[blocks] = begin;
+                end[blocks++] = size;
+            }
+        }
+
+        boolean[] waiting = new boolean[n];
+        Deque<Integer> worklist = new ArrayDeque<Integer>();
+        for (int b = 0; b < blocks; b++) {
+            waiting[b] = true;
+            worklist.add(b);
+        }
+
+        Map<DFA.Key, Integer> groups = new HashMap<DFA.Key, Integer>();
+        int[] groupOf = new int[n];
+        int[] groupStart = new int[n + 1];
+        int[] groupBlock = new int[n];
+        int[] regrouped = new int[n];
+        while (!worklist.isEmpty()) {
+            int b = worklist.poll();
+            waiting[b] = false;
+            if (end[b] - first[b] < 2) {
+                continue;
+            }
+
+            groups.clear();
+            for (int i = first[b]; i < end[b]; i++) {
+                int s = elements[i];
+                DFA.Key key = new DFA.Key(signature(edges[s], block));
+                Integer g = groups.get(key);
+                if (g == null) {
+                    g = groups.size();
+                    groups.put(key, g);
+                }
+                groupOf[s] = g;
+            }
+            int count = groups.size();
+            if (count == 1) {
+                continue;
+            }
+
+            Arrays.fill(groupStart, 0, count + 1, 0);
+            for (int i = first[b]; i < end[b]; i++) {
+                groupStart[groupOf[elements[i]] + 1]++;
+            }
+            int largest = 0;
+            for (int g = 0; g < count; g++) {
+                if (groupStart[g + 1] > groupStart[largest + 1]) {
+                    largest = g;
+                }
+            }
+            for (int g = 0; g < count; g++) {
+                groupStart[g + 1] += groupStart[g];
+            }
+
+            // Lay the groups out in order over the block's run, each as a block of its own.
+            int base = first[b];
+            for (int g = 0; g < count; g++) {
+                groupBlock[g] = g == largest ? b : blocks++;
+                first[groupBlock[g]] = base + groupStart[g];
+                end[groupBlock[g]] = base + groupStart[g + 1];
+            }
+            System.arraycopy(elements, base, regrouped, base, groupStart[count]);
+            for (int i = base; i < base + groupStart[count]; i++) {
+                int s = regrouped[i];
+                elements[base + groupStart[groupOf[s]]++] = s;
+                block[s] = groupBlock[groupOf[s]];
+            }
+
+            for (int g = 0; g < count; g++) {
+                if (g == largest) {
+                    continue;
+                }
+                int moved = groupBlock[g];
+                for (int i = first[moved]; i < end[moved]; i++) {
+                    int t = elements[i];
+                    for (int j = inStart[t]; j < inStart[t + 1]; j++) {
+                        int a = block[inSource[j]];
+                        if (!waiting[a]) {
+                            waiting[a] = true;
+                            worklist.add(a);
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] number = new int[blocks];
+        Arrays.fill(number, -1);
+        int numbered = 0;
+        for (int s = 0; s < n; s++) {
+            if (live[s]) {
+                if (number[block[s]] < 0) {
+                    number[block[s]] = numbered++;
+                }
+                block[s] = number[block[s]];
+            }
+        }
+        return block;
+    }
+
+    /**
+     * @return the edges of a state with their targets replaced by blocks, sorted and without duplicates
+     */
+    private static long[] signature(long[] edges, int[] block) {
+        long[] signature = new long[edges.length];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = edge(lo(edges[i]), hi(edges[i]), block[target(edges[i])]);
+        }
+        return unique(signature, signature.length);
+    }
+
+    private static Automaton toAutomaton(int start, long[][] edges, boolean[] accepting, boolean[] live, int[] block) {
+        int n = edges.length;
+        int blocks = 0;
+        for (int s = 0; s < n; s++) {
+            if (live[s]) {
+                blocks = Math.max(blocks, block[s] + 1);
+            }
+        }
+
+        // One representative per block carries the edges of the whole block.
+        int[] representative = new int[blocks];
+        Arrays.fill(representative, -1);
+        for (int s = 0; s < n; s++) {
+            if (live[s] && representative[block[s]] < 0) {
+                representative[block[s]] = s;
+            }
+        }
+
+        // An accepting block without edges can serve as the output state directly.
+        AutomatonState[] states = new AutomatonState[blocks];
+        AutomatonState out = null;
+        for (int b = 0; b < blocks; b++) {
+            states[b] = new AutomatonState();
+            int s = representative[b];
+            if (accepting[s] && edges[s].length == 0) {
+                out = states[b];
+            }
+        }
+        if (out == null) {
+            out = new AutomatonState();
+        }
+
+        for (int b = 0; b < blocks; b++) {
+            int s = representative[b];
+            // Ranges into the same block are merged into one transition.
+            Map<Integer, CharRanges> ranges = new TreeMap<Integer, CharRanges>();
+            for (long e : edges[s]) {
+                CharRanges chars = CharRanges.of(lo(e), hi(e));
+                CharRanges previous = ranges.get(block[target(e)]);
+                ranges.put(block[target(e)], previous == null ? chars : previous.union(chars));
+            }
+            for (Map.Entry<Integer, CharRanges> entry : ranges.entrySet()) {
+                CharRanges chars = entry.getValue();
+                if (chars.isSingleton()) {
+                    states[b].addTransition(chars.getLow(0), states[entry.getKey()]);
+                } else {
+                    states[b].addTransition(chars, states[entry.getKey()]);
+                }
+            }
+            if (accepting[s] && states[b] != out) {
+                states[b].addEpsilonTransition(out);
+            }
+        }
+        return new Automaton(states[block[start]], out).freeze();
+    }
+
+    private static long edge(char lo, char hi, int target) {
+        return ((long) lo << 48) | ((long) hi << 32) | target;
+    }
+
+    private static char lo(long edge) {
+        return (char) (edge >>> 48);
+    }
+
+    private static char hi(long edge) {
+        return (char) (edge >>> 32);
+    }
+
+    private static int target(long edge) {
+        return (int) edge;
+    }
+
+    private static long[] unique(long[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (count == 0 || values[count - 1] != values[i]) {
+                values[count++] = values[i];
+            }
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * State and edge counts of an NFA
+     */
+    public static class Stats {
+        private final int states;
+        private final int edges;
+        private final int epsilonEdges;
+
+        public Stats(int states, int edges, int epsilonEdges) {
+            this.states = states;
+            this.edges = edges;
+            this.epsilonEdges = epsilonEdges;
+        }
+
+        /**
+         * Counts the states and edges reachable from the start of an NFA
+         *
+         * @param nfa the nfa to count
+         * @return the counts
+         */
+        public static Stats of(Automaton nfa) {
+            return of(CompiledAutomaton.compile(nfa));
+        }
+
+        static Stats of(CompiledAutomaton program) {
+            return new Stats(program.getStateCount(), program.getEdgeCount(), program.getEpsilonEdgeCount());
+        }
+
+        public int getStates() {
+            return states;
+        }
+
+        public int getEdges() {
+            return edges;
+        }
+
+        public int getEpsilonEdges() {
+            return epsilonEdges;
+        }
+
+        @Override
+        public String toString() {
+            return states + " states, " + edges + " edges, " + epsilonEdges + " epsilon edges";
+        }
+    }
+}
@@ -4,9 +4,22 @@ import java.util.*;
 
 /**
  * This class simulates a non-deterministic finite automaton over ASCII strings.
+ *
+ * A simulator without a DFA cache only reads its automaton and can be shared between
+ * threads if the automaton is frozen. With a DFA cache it is not thread-safe; share the
+ * automaton instead and give each thread its own simulator or {@link #matcher()}.
+ *
+ * A simulator built with {@link MatchMetrics} reports what every match cost, through
+ * {@link #matches(CharSequence)}, {@link #matchesCompiled(CharSequence)}, the searches and
+ * its matchers alike. The counting happens in the normal matching loops, and without
+ * metrics costs a null check per character.
  */
 public class NFASimulator {
     private final Automaton nfa;
+    private final LazyDFA dfa;
+    private final MatchMetrics metrics;
+    // Compiled on first use, unless the DFA cache needs it up front.
+    private volatile CompiledAutomaton program;
 
     /**
      * Create a new simulator from a given NFA structure
@@ -14,7 +27,50 @@ public class NFASimulator {
      * @param nfa the nfa to simulate
      */
     public NFASimulator(Automaton nfa) {
+        this(nfa, 0);
+    }
+
+    /**
+     * Create a new simulator that determinizes the NFA on demand, keeping at most
+     * maxDfaStates states cached at a time. See {@link LazyDFA}.
+     *
+     * @param nfa          the nfa to simulate
+     * @param maxDfaStates the DFA cache cap, or 0 to always simulate the NFA directly
+     */
+    public NFASimulator(Automaton nfa, int maxDfaStates) {
+        this(nfa, maxDfaStates, null);
+    }
+
+    /**
+     * Create a new simulator that reports the cost of every match
+     *
+     * @param nfa          the nfa to simulate
+     * @param maxDfaStates the DFA cache cap, or 0 to always simulate the NFA directly
+     * @param metrics      receives the cost of each match, or null for none
+     */
+    public NFASimulator(Automaton nfa, int maxDfaStates, MatchMetrics metrics) {
         this.nfa = nfa;
+        if (maxDfaStates > 0) {
+            this.program = CompiledAutomaton.compile(nfa);
+            this.dfa = new LazyDFA(nfa, CharClasses.of(program), maxDfaStates);
+        } else {
+            this.dfa = null;
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the array form of the NFA used by {@link #matchesCompiled(CharSequence)},
+     *         compiled the first time it is needed
+     */
+    public CompiledAutomaton getProgram() {
+        CompiledAutomaton p = program;
+        if (p == null) {
+            // Threads racing here may each compile; any of the results will do.
+            p = CompiledAutomaton.compile(nfa);
+            program = p;
+        }
+        return p;
     }
 
     /**
@@ -23,55 +79,158 @@ public class NFASimulator {
      * @param text the text to try matching
      * @return true if the text is accepted by the NFA, else false
      */
-    public boolean matches(String text) {
-        Set<AutomatonState> in = new HashSet<AutomatonState>();
-        in.add(nfa.getStart());
-        Set<AutomatonState> d = closure(in);
+    public boolean matches(CharSequence text) {
+        return dfa != null ? matchesDfa(text) : matchesNfa(text);
+    }
+
+    private boolean matchesNfa(CharSequence text) {
+        long started = metrics != null ? System.nanoTime() : 0;
+        long activeStates = 0;
+        int peakActiveStates = 0;
+
+        EpsilonClosure closure = new EpsilonClosure();
+        Set<AutomatonState> d = closure.closure(Collections.singleton(nfa.getStart()));
 
-        for (char ch : text.toCharArray()) {
-            d = dfaEdge(d, ch);
+        for (int i = 0; i < text.length(); i++) {
+            d = closure.step(d, text.charAt(i));
+            if (metrics != null) {
+                activeStates += d.size();
+                peakActiveStates = Math.max(peakActiveStates, d.size());
+            }
         }
 
-        return d.contains(nfa.getOut());
+        boolean accepted = d.contains(nfa.getOut());
+        if (metrics != null) {
+            metrics.statesVisited(activeStates, peakActiveStates, closure.getEdgesWalked());
+            metrics.matchCompleted(text.length(), System.nanoTime() - started);
+        }
+        return accepted;
+    }
+
+    private boolean matchesDfa(CharSequence text) {
+        long started = metrics != null ? System.nanoTime() : 0;
+        long misses = dfa.getMissCount();
+        long closureWork = dfa.getClosureWork();
+        int flushes = dfa.getFlushCount();
+        long activeStates = 0;
+        int peakActiveStates = 0;
+
+        LazyDFA.State d = dfa.getStart();
+        int i = 0;
+        for (; i < text.length() && !d.dead; i++) {
+            d = dfa.step(d, text.charAt(i));
+            if (metrics != null) {
+                activeStates += d.nfaStates.size();
+                peakActiveStates = Math.max(peakActiveStates, d.nfaStates.size());
+            }
+        }
+
+        if (metrics != null) {
+            int missed = (int) (dfa.getMissCount() - misses);
+            metrics.statesVisited(activeStates, peakActiveStates, dfa.getClosureWork() - closureWork);
+            metrics.cacheUsed(i - missed, missed, dfa.getFlushCount() - flushes);
+            metrics.matchCompleted(i, System.nanoTime() - started);
+        }
+        return d.accepting;
     }
 
     /**
-     * Find all states reachable from the input by epsilon moves. Basically a DFS.
-     * @param states the set of states to start from
-     * @return set of all states reachable from state by epsilon moves
+     * Creates a reusable matcher over the compiled NFA. A matcher allocates nothing once
+     * built, so callers on a hot path should keep one per thread rather than calling
+     * {@link #matches(CharSequence)} repeatedly. Matchers also accept input in chunks,
+     * so large inputs never have to be held in memory at once.
+     *
+     * @return a new matcher
      */
-    private Set<AutomatonState> closure(Set<AutomatonState> states) {
-        Deque<AutomatonState> t_prime = new ArrayDeque<AutomatonState>();
-        Set<AutomatonState> t = new HashSet<AutomatonState>();
+    public NFAMatcher matcher() {
+        return new NFAMatcher(getProgram(), metrics);
+    }
 
-        for (AutomatonState s : states) {
-            t_prime.addFirst(s);
-        }
+    /**
+     * Finds the leftmost-longest match of the NFA anywhere in a text, without wrapping the
+     * pattern in loops. See {@link NFAMatcher#find(CharSequence, int)}.
+     *
+     * @param text the text to search
+     * @return the match, or null if there is none
+     */
+    public Match find(CharSequence text) {
+        return matcher().find(text, 0);
+    }
+
+    /**
+     * Finds every non-overlapping leftmost-longest match of the NFA in a text
+     *
+     * @param text the text to search
+     * @return the matches, in order
+     */
+    public List<Match> findAll(CharSequence text) {
+        return matcher().findAll(text);
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA, running over the
+     * compiled array form instead of the state objects. State sets are bitsets, so no
+     * characters are boxed and no maps are consulted per step.
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted by the NFA, else false
+     */
+    public boolean matchesCompiled(CharSequence text) {
+        long started = metrics != null ? System.nanoTime() : 0;
+        long activeStates = 0;
+        int peakActiveStates = 0;
 
-        while (!t_prime.isEmpty()) {
-            AutomatonState s = t_prime.removeFirst();
-            t.add(s);
+        CompiledAutomaton p = getProgram();
+        int[] stack = new int[p.stateCount];
+        long[] d = new long[p.words];
+        long[] next = new long[p.words];
+        p.addClosure(d, p.start, stack);
+        // Without precomputed closures every state a step reaches has its epsilon edges walked.
+        boolean walked = metrics != null && !p.hasClosureBitsets();
+        long closureWork = walked ? epsilonEdges(p, d) : 0;
 
-            for (AutomatonState ep : s.getEpsilonTransitions()) {
-                t_prime.addFirst(ep);
+        boolean live = true;
+        int i = 0;
+        for (; i < text.length() && live; i++) {
+            live = p.step(d, next, text.charAt(i), stack);
+            long[] tmp = d;
+            d = next;
+            next = tmp;
+            if (metrics != null) {
+                int size = 0;
+                for (long word : d) {
+                    size += Long.bitCount(word);
+                }
+                activeStates += size;
+                peakActiveStates = Math.max(peakActiveStates, size);
+                if (walked) {
+                    closureWork += epsilonEdges(p, d);
+                }
             }
         }
 
-        return t;
+        boolean accepted = live && CompiledAutomaton.isSet(d, 0, p.accept);
+        if (metrics != null) {
+            metrics.statesVisited(activeStates, peakActiveStates, closureWork);
+            metrics.matchCompleted(i, System.nanoTime() - started);
+        }
+        return accepted;
     }
 
     /**
-     * Find all states NFA could be in after taking all possible epsilon moves and a character move.
-     * @param d current states
-     * @param c character to transition with
-     * @return all states possible by taking transition with label c and epsilons
+     * Counts the epsilon edges leaving a set of states, which is how many the closures
+     * that built it followed, since each state is only expanded when first added.
      */
-    private Set<AutomatonState> dfaEdge(Set<AutomatonState> d, char c) {
-        Set<AutomatonState> input = new HashSet<AutomatonState>();
-        for (AutomatonState s : d) {
-            input.addAll(s.getTransitions(c));
+    private static long epsilonEdges(CompiledAutomaton p, long[] set) {
+        long edges = 0;
+        for (int w = 0; w < set.length; w++) {
+            long bits = set[w];
+            while (bits != 0) {
+                int s = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                edges += p.epsStart[s + 1] - p.epsStart[s];
+            }
         }
-        return closure(input);
+        return edges;
     }
-
 }
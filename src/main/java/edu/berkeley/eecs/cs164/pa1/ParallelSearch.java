@@ -0,0 +1,450 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class runs an NFA over large inputs on a {@link ForkJoinPool}. The input is split
+ * into chunks that are matched independently and whose results are merged in order.
+ *
+ * Line searches split on line boundaries, so every chunk is self-contained. Whole-input
+ * matching has no such boundaries to split on; instead every chunk computes a transfer
+ * function mapping each state the NFA could be in at the start of the chunk to the set of
+ * states it could be in at the end. Composing the functions left to right gives the state
+ * set for the whole input. A chunk simulates all of its entry states in lockstep, and
+ * entry states whose state sets become equal are merged into one run from then on, since
+ * they stay equal to the end of the chunk. Until they merge, each entry state costs a
+ * simulation of its own. So automata with more entry states than the pool has threads
+ * are matched sequentially; such automata could take longer in parallel than sequentially.
+ *
+ * File searches lower the NFA to UTF-8 and analyze it once, when the search is created;
+ * every worker thread then keeps its own {@link FileScanner} over the shared result, whose
+ * DFA cache stays warm from one chunk to the next. Instances can be shared between threads.
+ */
+public class ParallelSearch {
+    /**
+     * Default size of a chunk, in characters or bytes
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+
+    private final CompiledAutomaton program;
+    private final FileScanner scanner;
+    private final ThreadLocal<FileScanner> scanners = new ThreadLocal<FileScanner>() {
+        @Override
+        protected FileScanner initialValue() {
+            return scanner.copy();
+        }
+    };
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int[] entries;
+
+    /**
+     * Create a new parallel search with the default chunk size on a shared pool
+     *
+     * @param nfa the nfa to search with
+     */
+    public ParallelSearch(Automaton nfa) {
+        this(nfa, DEFAULT_POOL, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a new parallel search
+     *
+     * @param nfa       the nfa to search with
+     * @param pool      the pool to run chunks on
+     * @param chunkSize the target size of a chunk, in characters or bytes
+     */
+    public ParallelSearch(Automaton nfa, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.program = CompiledAutomaton.compile(nfa);
+        this.scanner = new FileScanner(nfa);
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.entries = entryStates(program);
+    }
+
+    /**
+     * Finds the lines of a text matched in full by the NFA. Lines end at '\n', optionally
+     * preceded by '\r'.
+     *
+     * @param text the text to search
+     * @return the offsets of the first character of every matching line, in order
+     */
+    public long[] findLines(CharSequence text) {
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        int position = 0;
+        while (position < text.length()) {
+            int end = Math.min(text.length(), position + chunkSize);
+            while (end < text.length() && text.charAt(end - 1) != '\n') {
+                end++;
+            }
+            bounds.add((long) end);
+            position = end;
+        }
+        return pool.invoke(new TextLinesTask(text, toArray(bounds), 0, bounds.size() - 1));
+    }
+
+    /**
+     * Finds the lines of a file matched in full by the NFA, as {@link FileScanner} does
+     *
+     * @param file the file to search
+     * @return the byte offsets of the start of every matching line, in order
+     * @throws IOException if the file cannot be read
+     */
+    public long[] findLines(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            List<Long> bounds = new ArrayList<Long>();
+            bounds.add(0L);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position = nextLineStart(channel, Math.min(size, position + chunkSize), size);
+                bounds.add(position);
+            }
+            return pool.invoke(new FileLinesTask(channel, toArray(bounds), 0, bounds.size() - 1));
+        } catch (RuntimeException e) {
+            // Chunks can only fail unchecked; the pool may wrap that again when rethrowing.
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA, matching chunks
+     * in parallel and stitching them together with transfer functions
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted by the NFA, else false
+     */
+    public boolean matches(CharSequence text) {
+        if (entries.length > pool.getParallelism() || text.length() <= chunkSize) {
+            return new NFAMatcher(program).matches(text);
+        }
+
+        int chunks = (text.length() + chunkSize - 1) / chunkSize;
+        long[][][] transfers = new long[chunks][][];
+        pool.invoke(new TransferTask(text, transfers, 0, chunks));
+
+        long[] d = new long[program.words];
+        program.addClosure(d, program.start, new int[program.stateCount]);
+        for (long[][] transfer : transfers) {
+            long[] next = new long[program.words];
+            boolean live = false;
+            for (int i = 0; i < entries.length; i++) {
+                if (transfer[i] != null && CompiledAutomaton.isSet(d, 0, entries[i])) {
+                    for (int w = 0; w < next.length; w++) {
+                        next[w] |= transfer[i][w];
+                    }
+                    live = true;
+                }
+            }
+            if (!live) {
+                return false;
+            }
+            d = next;
+        }
+        return CompiledAutomaton.isSet(d, 0, program.accept);
+    }
+
+    /**
+     * Every state set reached by the simulation is the closure of the start state or of
+     * targets of character edges, so those are the only entry states a transfer function
+     * needs. States that cannot reach the accept state are left out.
+     * @return the entry states
+     */
+    private static int[] entryStates(CompiledAutomaton program) {
+        boolean[] entry = new boolean[program.stateCount];
+        entry[program.start] = true;
+        for (int target : program.edgeTarget) {
+            entry[target] = true;
+        }
+        int[] result = new int[program.stateCount];
+        int n = 0;
+        for (int s = 0; s < program.stateCount; s++) {
+            if (entry[s] && program.canReachAccept(s)) {
+                result[n++] = s;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        // Back up one byte so a chunk that already ends in a newline stays where it is.
+        long at = position - 1;
+        while (at < size) {
+            buffer.clear();
+            int n = channel.read(buffer, at);
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += Math.max(n, 1);
+        }
+        return size;
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Collects matching line offsets without boxing them
+     */
+    private static class OffsetCollector implements FileScanner.MatchListener {
+        private long[] offsets = new long[16];
+        private int size;
+
+        public void lineMatched(long offset, int length) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
+    }
+
+    /**
+     * Matches the lines of chunks [from, to), splitting the range in half until one chunk is left
+     */
+    private abstract class LinesTask extends RecursiveTask<long[]> {
+        final long[] bounds;
+        final int from;
+        final int to;
+
+        LinesTask(long[] bounds, int from, int to) {
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract LinesTask split(int from, int to);
+
+        abstract long[] chunk(long start, long end);
+
+        @Override
+        protected long[] compute() {
+            if (to - from == 0) {
+                return new long[0];
+            }
+            if (to - from == 1) {
+                return chunk(bounds[from], bounds[to]);
+            }
+            int mid = (from + to) >>> 1;
+            LinesTask left = split(from, mid);
+            left.fork();
+            long[] right = split(mid, to).compute();
+            return concat(left.join(), right);
+        }
+    }
+
+    private class TextLinesTask extends LinesTask {
+        private final CharSequence text;
+
+        TextLinesTask(CharSequence text, long[] bounds, int from, int to) {
+            super(bounds, from, to);
+            this.text = text;
+        }
+
+        @Override
+        LinesTask split(int from, int to) {
+            return new TextLinesTask(text, bounds, from, to);
+        }
+
+        @Override
+        long[] chunk(long start, long end) {
+            NFAMatcher matcher = new NFAMatcher(program);
+            OffsetCollector offsets = new OffsetCollector();
+            int lineStart = (int) start;
+            while (lineStart < end) {
+                int lineEnd = lineStart;
+                matcher.reset();
+                while (lineEnd < end && text.charAt(lineEnd) != '\n') {
+                    char ch = text.charAt(lineEnd++);
+                    boolean crlf = ch == '\r' && lineEnd < end && text.charAt(lineEnd) == '\n';
+                    if (!crlf && matcher.canAccept()) {
+                        matcher.feed(ch);
+                    }
+                }
+                if (matcher.isAccepted()) {
+                    offsets.lineMatched(lineStart, lineEnd - lineStart);
+                }
+                lineStart = lineEnd + 1;
+            }
+            return offsets.toArray();
+        }
+    }
+
+    private class FileLinesTask extends LinesTask {
+        private final FileChannel channel;
+
+        FileLinesTask(FileChannel channel, long[] bounds, int from, int to) {
+            super(bounds, from, to);
+            this.channel = channel;
+        }
+
+        @Override
+        LinesTask split(int from, int to) {
+            return new FileLinesTask(channel, bounds, from, to);
+        }
+
+        @Override
+        long[] chunk(long start, long end) {
+            if (end - start > Integer.MAX_VALUE) {
+                throw new RuntimeException(new IOException("Line at offset " + start + " is too long to map"));
+            }
+            try {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                OffsetCollector offsets = new OffsetCollector();
+                scanners.get().scanLines(buffer, (int) (end - start), start, offsets);
+                return offsets.toArray();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Computes the transfer functions of chunks [from, to) into transfers
+     */
+    private class TransferTask extends RecursiveTask<Void> {
+        private final CharSequence text;
+        private final long[][][] transfers;
+        private final int from;
+        private final int to;
+
+        TransferTask(CharSequence text, long[][][] transfers, int from, int to) {
+            this.text = text;
+            this.transfers = transfers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                TransferTask left = new TransferTask(text, transfers, from, mid);
+                left.fork();
+                new TransferTask(text, transfers, mid, to).compute();
+                left.join();
+                return null;
+            }
+
+            int start = from * chunkSize;
+            int end = Math.min(text.length(), start + chunkSize);
+            int k = entries.length;
+            int[] stack = new int[program.stateCount];
+            // Run r holds the state set runs[r]; entry state i is in run runOf[i], or
+            // dead at -1.
+            long[][] runs = new long[k][program.words];
+            long[][] next = new long[k][program.words];
+            boolean[] live = new boolean[k];
+            int[] runOf = new int[k];
+            int[] remap = new int[k];
+            int[] table = new int[Integer.highestOneBit(Math.max(1, k)) * 4];
+            for (int i = 0; i < k; i++) {
+                program.addClosure(runs[i], entries[i], stack);
+                live[i] = true;
+                runOf[i] = i;
+            }
+            int count = merge(runs, live, k, runOf, remap, table);
+
+            for (int j = start; j < end && count > 0; j++) {
+                char ch = text.charAt(j);
+                for (int r = 0; r < count; r++) {
+                    live[r] = program.step(runs[r], next[r], ch, stack);
+                    long[] tmp = runs[r];
+                    runs[r] = next[r];
+                    next[r] = tmp;
+                }
+                if (count > 1 || !live[0]) {
+                    count = merge(runs, live, count, runOf, remap, table);
+                }
+            }
+
+            // A dead entry state contributes nothing, so it is left null. Merged entry
+            // states share their set.
+            long[][] transfer = new long[k][];
+            for (int i = 0; i < k; i++) {
+                transfer[i] = runOf[i] < 0 ? null : runs[runOf[i]];
+            }
+            transfers[from] = transfer;
+            return null;
+        }
+
+        /**
+         * Drops dead runs and merges runs with equal state sets, moving the survivors to
+         * the front of runs and pointing the entry states at them.
+         * @return the number of surviving runs
+         */
+        private int merge(long[][] runs, boolean[] live, int count, int[] runOf, int[] remap, int[] table) {
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            int survivors = 0;
+            for (int r = 0; r < count; r++) {
+                remap[r] = -1;
+                if (!live[r]) {
+                    continue;
+                }
+                int slot = Arrays.hashCode(runs[r]) & mask;
+                while (table[slot] >= 0 && !Arrays.equals(runs[table[slot]], runs[r])) {
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot] >= 0) {
+                    remap[r] = table[slot];
+                    continue;
+                }
+                // Slots before survivors are taken, so swapping keeps every buffer.
+                long[] tmp = runs[survivors];
+                runs[survivors] = runs[r];
+                runs[r] = tmp;
+                live[survivors] = true;
+                table[slot] = survivors;
+                remap[r] = survivors++;
+            }
+            for (int i = 0; i < runOf.length; i++) {
+                if (runOf[i] >= 0) {
+                    runOf[i] = remap[runOf[i]];
+                }
+            }
+            return survivors;
+        }
+    }
+}
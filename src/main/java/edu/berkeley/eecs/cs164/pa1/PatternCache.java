@@ -0,0 +1,302 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class sits in front of {@link RegexParser#parse(String)} and keeps the compiled
+ * form of recently used patterns. Each pattern is compiled once, even when many threads
+ * ask for it at the same moment.
+ *
+ * The cache is bounded either by entry count or by the total number of NFA states it
+ * holds. When a miss pushes the cache over its bound, entries are evicted in
+ * approximately least recently used order by the CLOCK algorithm: kept entries sit in a
+ * queue in insertion order, and a hit sets a reference bit on its entry. Eviction takes
+ * entries from the head, and an entry whose bit is set gets a second chance: its bit is
+ * cleared and it goes to the tail. Hits therefore only read a concurrent map and, the
+ * first time after each eviction pass, write one flag, so they never block and hot
+ * entries are not written on every hit. Each eviction costs amortized constant time.
+ *
+ * The array form of a pattern is only compiled by the first {@link #getCompiled(String)}
+ * for it, so callers of {@link #get(String)} alone never pay for it.
+ */
+public class PatternCache {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final long maxWeight;
+    private final boolean weighByStates;
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object evictionLock = new Object();
+    // Kept entries in clock order, only touched under evictionLock.
+    private final ArrayDeque<Entry> clock = new ArrayDeque<Entry>();
+
+    private PatternCache(long maxWeight, boolean weighByStates) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Cache bound must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.weighByStates = weighByStates;
+    }
+
+    /**
+     * Create a cache holding at most a given number of patterns
+     *
+     * @param maxEntries the number of patterns to keep
+     * @return a new cache
+     */
+    public static PatternCache withMaxEntries(int maxEntries) {
+        return new PatternCache(maxEntries, false);
+    }
+
+    /**
+     * Create a cache holding patterns with at most a given number of NFA states in total.
+     * A single pattern larger than the bound is compiled but not kept. Once a pattern's
+     * array form is compiled, the 64-bit words of its precomputed epsilon closures (see
+     * {@link CompiledAutomaton#hasClosureBitsets()}) count towards the bound as well,
+     * since for patterns just under {@link CompiledAutomaton#CLOSURE_BITSET_LIMIT} states
+     * they take far more memory than the states themselves.
+     *
+     * @param maxStates the number of states to keep
+     * @return a new cache
+     */
+    public static PatternCache withMaxStates(long maxStates) {
+        return new PatternCache(maxStates, true);
+    }
+
+    /**
+     * Gets the NFA for a pattern, compiling it if it is not cached
+     *
+     * @param pattern the pattern to compile
+     * @return a frozen NFA accepting the pattern
+     * @throws RegexParseException upon encountering a parse error
+     */
+    public Automaton get(String pattern) {
+        return lookup(pattern).nfa;
+    }
+
+    /**
+     * Gets the compiled array form of a pattern, compiling it if it is not cached
+     *
+     * @param pattern the pattern to compile
+     * @return the compiled automaton
+     * @throws RegexParseException upon encountering a parse error
+     */
+    public CompiledAutomaton getCompiled(String pattern) {
+        Value value = lookup(pattern);
+        CompiledAutomaton program = value.program;
+        return program != null ? program : compile(pattern, value);
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to compile their pattern
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of patterns evicted to stay within the bound
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of patterns currently cached
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of cached patterns, in entries or in states and closure words depending on the bound
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    /**
+     * Drops every cached pattern
+     */
+    public void clear() {
+        synchronized (evictionLock) {
+            for (String pattern : entries.keySet()) {
+                remove(pattern);
+            }
+            clock.clear();
+        }
+    }
+
+    private Value lookup(String pattern) {
+        Entry entry = entries.get(pattern);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            Entry created = new Entry(pattern);
+            entry = entries.putIfAbsent(pattern, created);
+            if (entry == null) {
+                misses.increment();
+                entry = created;
+                entry.task.run();
+            } else {
+                hits.increment();
+            }
+        }
+
+        Value value;
+        try {
+            value = entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + pattern + " to compile", e);
+        } catch (ExecutionException e) {
+            // Failed patterns are not kept; every lookup reports the error afresh.
+            entries.remove(pattern, entry);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+
+        if (!entry.weighed) {
+            weigh(pattern, entry, value);
+        } else if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return value;
+    }
+
+    private void weigh(String pattern, Entry entry, Value value) {
+        synchronized (evictionLock) {
+            if (entry.weighed || entries.get(pattern) != entry) {
+                return;
+            }
+            entry.weight = weighByStates ? value.states : 1;
+            if (entry.weight > maxWeight) {
+                // Keeping it would mean evicting everything else first.
+                entries.remove(pattern, entry);
+                return;
+            }
+            entry.weighed = true;
+            entry.value = value;
+            weight.addAndGet(entry.weight);
+            clock.addLast(entry);
+            if (weight.get() > maxWeight) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Compiles the array form of a pattern and, if the pattern is kept, charges its
+     * closures to its weight. Compiling happens outside the lock; if two threads race,
+     * the first to publish wins.
+     */
+    private CompiledAutomaton compile(String pattern, Value value) {
+        CompiledAutomaton program = CompiledAutomaton.compile(value.nfa);
+        synchronized (evictionLock) {
+            if (value.program != null) {
+                return value.program;
+            }
+            value.program = program;
+            Entry entry = entries.get(pattern);
+            if (!weighByStates || entry == null || entry.value != value || !program.hasClosureBitsets()) {
+                return program;
+            }
+            long closureWords = (long) program.getStateCount() * program.words;
+            if (entry.weight + closureWords > maxWeight) {
+                // As in weigh, a pattern over the bound on its own is dropped, not made room for.
+                clock.remove(entry);
+                remove(pattern);
+                return program;
+            }
+            entry.weight += closureWords;
+            weight.addAndGet(closureWords);
+            if (weight.get() > maxWeight) {
+                evict();
+            }
+        }
+        return program;
+    }
+
+    private void evict() {
+        while (weight.get() > maxWeight) {
+            Entry candidate = clock.pollFirst();
+            if (entries.get(candidate.pattern) != candidate) {
+                // Already removed by clear.
+                continue;
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                clock.addLast(candidate);
+            } else if (remove(candidate.pattern)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean remove(String pattern) {
+        Entry entry = entries.remove(pattern);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.weighed) {
+            weight.addAndGet(-entry.weight);
+        }
+        return true;
+    }
+
+    /**
+     * The compiled forms of a pattern. The array form is built on first use.
+     */
+    private static class Value {
+        final Automaton nfa;
+        final int states;
+        // Only written under evictionLock.
+        volatile CompiledAutomaton program;
+
+        Value(Automaton nfa) {
+            this.nfa = nfa;
+            this.states = RegexParser.states(nfa).size();
+        }
+    }
+
+    /**
+     * A cache slot. The task compiles the pattern exactly once; threads that find the
+     * slot while it is still compiling wait on it instead of compiling again.
+     */
+    private static class Entry {
+        final String pattern;
+        final FutureTask<Value> task;
+        // Set by hits, cleared by eviction passes.
+        volatile boolean referenced;
+        // Only written under evictionLock.
+        volatile boolean weighed;
+        long weight;
+        // The value the weight was charged for, only touched under evictionLock.
+        Value value;
+
+        Entry(final String pattern) {
+            this.pattern = pattern;
+            this.task = new FutureTask<Value>(new Callable<Value>() {
+                public Value call() {
+                    return new Value(RegexParser.parse(pattern));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class matches many patterns against an input in a single pass, in the manner of
+ * RE2::Set. The patterns are combined into one NFA whose start state has an epsilon edge
+ * to the start of every pattern, and each pattern keeps its own accept state, so the
+ * states reached at the end of the input tell which patterns matched.
+ *
+ * The combined NFA is determinized lazily over its character classes (see
+ * {@link CharClasses}), so once the DFA cache is warm each character costs one table
+ * lookup however many patterns there are. Like {@link LazyDFA}, the cache is flushed when
+ * it reaches its cap. Each DFA state remembers which patterns accept in it.
+ *
+ * Sets cache DFA states as they go, so they are not thread-safe; give each thread its own.
+ */
+public class PatternSet {
+    private static final int UNKNOWN = -2;
+    private static final int DEAD = -1;
+
+    private final List<String> patterns;
+    private final CompiledAutomaton program;
+    private final CharClasses classes;
+    private final int[] acceptIds;
+    private final int maxDfaStates;
+    private Engine anchored;
+    private Engine unanchored;
+
+    /**
+     * Create a new set with the default DFA cache cap
+     *
+     * @param patterns the patterns to match, numbered in order from 0
+     * @throws RegexParseException if any pattern fails to parse
+     */
+    public PatternSet(String... patterns) {
+        this(Arrays.asList(patterns), LazyDFA.DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Create a new set
+     *
+     * @param patterns     the patterns to match, numbered in order from 0
+     * @param maxDfaStates the number of DFA states to keep before flushing the cache
+     * @throws RegexParseException if any pattern fails to parse
+     */
+    public PatternSet(List<String> patterns, int maxDfaStates) {
+        if (maxDfaStates < 1) {
+            throw new IllegalArgumentException("DFA cache needs room for at least one state: " + maxDfaStates);
+        }
+        this.patterns = Collections.unmodifiableList(new ArrayList<String>(patterns));
+        this.maxDfaStates = maxDfaStates;
+
+        AutomatonState start = new AutomatonState();
+        AutomatonState[] accepts = new AutomatonState[patterns.size()];
+        for (int i = 0; i < accepts.length; i++) {
+            Automaton nfa = RegexParser.parse(patterns.get(i));
+            start.addEpsilonTransition(nfa.getStart());
+            accepts[i] = nfa.getOut();
+        }
+        // No single state accepts for the whole set; the accept states are tracked instead.
+        Automaton combined = new Automaton(start, new AutomatonState()).freeze();
+        this.acceptIds = new int[accepts.length];
+        this.program = CompiledAutomaton.compile(combined, accepts, acceptIds);
+        this.classes = CharClasses.of(program);
+    }
+
+    /**
+     * @return the number of patterns in the set
+     */
+    public int size() {
+        return patterns.size();
+    }
+
+    /**
+     * @param index the number of a pattern
+     * @return the pattern
+     */
+    public String getPattern(int index) {
+        return patterns.get(index);
+    }
+
+    /**
+     * Finds the patterns that match the whole of a text
+     *
+     * @param text the text to try matching
+     * @return the numbers of the matching patterns
+     */
+    public BitSet matches(CharSequence text) {
+        if (anchored == null) {
+            anchored = new Engine(true);
+        }
+        return anchored.run(text);
+    }
+
+    /**
+     * Finds the patterns that match somewhere in a text
+     *
+     * @param text the text to search
+     * @return the numbers of the patterns matching some substring of text
+     */
+    public BitSet search(CharSequence text) {
+        if (unanchored == null) {
+            unanchored = new Engine(false);
+        }
+        return unanchored.run(text);
+    }
+
+    /**
+     * A lazily built DFA over the combined NFA. Unanchored engines add the closure of the
+     * start state after every step, so a match may begin at any position, and collect
+     * every pattern seen accepting along the way.
+     */
+    private class Engine {
+        private final boolean anchored;
+        private final int classCount = classes.getClassCount();
+        private final int[] stack = new int[program.stateCount];
+        private final long[] next = new long[program.words];
+        private final Map<DFA.Key, Integer> ids = new HashMap<DFA.Key, Integer>();
+        private final List<long[]> sets = new ArrayList<long[]>();
+        private final List<int[]> accepted = new ArrayList<int[]>();
+        private int[] transitions = new int[0];
+        private int start;
+
+        Engine(boolean anchored) {
+            this.anchored = anchored;
+            flush();
+        }
+
+        BitSet run(CharSequence text) {
+            BitSet result = new BitSet(patterns.size());
+            int state = start;
+            if (!anchored) {
+                collect(state, result);
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char ch = text.charAt(i);
+                int target = transitions[state * classCount + classes.classOf(ch)];
+                if (target == UNKNOWN) {
+                    target = computeTarget(state, ch);
+                }
+                if (target == DEAD) {
+                    return result;
+                }
+                state = target;
+                if (!anchored) {
+                    collect(state, result);
+                }
+            }
+            if (anchored) {
+                collect(state, result);
+            }
+            return result;
+        }
+
+        private void collect(int state, BitSet result) {
+            for (int pattern : accepted.get(state)) {
+                result.set(pattern);
+            }
+        }
+
+        private int computeTarget(int state, char ch) {
+            boolean live = program.step(sets.get(state), next, ch, stack);
+            if (!anchored) {
+                program.addClosure(next, program.start, stack);
+            } else if (!live) {
+                transitions[state * classCount + classes.classOf(ch)] = DEAD;
+                return DEAD;
+            }
+
+            Integer id = ids.get(new DFA.Key(next));
+            if (id != null) {
+                transitions[state * classCount + classes.classOf(ch)] = id;
+                return id;
+            }
+            if (sets.size() >= maxDfaStates) {
+                // The source state goes with the flush; only the new state is needed.
+                flush();
+            } else {
+                transitions[state * classCount + classes.classOf(ch)] = sets.size();
+            }
+            return add(next.clone());
+        }
+
+        private int add(long[] set) {
+            int id = sets.size();
+            ids.put(new DFA.Key(set), id);
+            sets.add(set);
+            List<Integer> patternsHere = new ArrayList<Integer>();
+            for (int i = 0; i < acceptIds.length; i++) {
+                if (CompiledAutomaton.isSet(set, 0, acceptIds[i])) {
+                    patternsHere.add(i);
+                }
+            }
+            int[] packed = new int[patternsHere.size()];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = patternsHere.get(i);
+            }
+            accepted.add(packed);
+
+            if (transitions.length < (id + 1) * classCount) {
+                int[] grown = Arrays.copyOf(transitions, Math.max(2 * transitions.length, (id + 1) * classCount));
+                Arrays.fill(grown, transitions.length, grown.length, UNKNOWN);
+                transitions = grown;
+            }
+            return id;
+        }
+
+        private void flush() {
+            ids.clear();
+            sets.clear();
+            accepted.clear();
+            Arrays.fill(transitions, UNKNOWN);
+            long[] initial = new long[program.words];
+            program.addClosure(initial, program.start, stack);
+            start = add(initial);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Thrown when a pattern's automaton is over a {@link ComplexityBudget}, either once
+ * parsed or part way through parsing
+ */
+public class PatternTooComplexException extends RegexParseException {
+    private final Complexity complexity;
+
+    public PatternTooComplexException(String message, Complexity complexity) {
+        super(message);
+        this.complexity = complexity;
+    }
+
+    /**
+     * @return the analysis of the rejected automaton, partial if parsing was abandoned
+     *         (see {@link Complexity#isComplete()})
+     */
+    public Complexity getComplexity() {
+        return complexity;
+    }
+}
@@ -0,0 +1,136 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * This class is an arena of NFA states for building a {@link CompiledAutomaton} without
+ * allocating an object per state. States are just numbers, and edges are appended to
+ * parallel arrays in the order they are added, so a fragment built from a run of fresh
+ * states owns exactly the states and edges added while building it, and can be copied
+ * by copying those ranges.
+ *
+ * {@link #build(int, int)} sorts the edges by source state, keeping their order, into
+ * the compiled form's arrays.
+ */
+final class ProgramBuilder {
+    private int states;
+
+    private int edges;
+    private int[] edgeFrom = new int[16];
+    private char[] edgeLo = new char[16];
+    private char[] edgeHi = new char[16];
+    private int[] edgeTo = new int[16];
+
+    private int epsilons;
+    private int[] epsFrom = new int[16];
+    private int[] epsTo = new int[16];
+
+    /**
+     * @return the number of a fresh state
+     */
+    int addState() {
+        return states++;
+    }
+
+    void addEdge(int from, char lo, char hi, int to) {
+        if (edges == edgeFrom.length) {
+            int size = edges * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, size);
+            edgeLo = Arrays.copyOf(edgeLo, size);
+            edgeHi = Arrays.copyOf(edgeHi, size);
+            edgeTo = Arrays.copyOf(edgeTo, size);
+        }
+        edgeFrom[edges] = from;
+        edgeLo[edges] = lo;
+        edgeHi[edges] = hi;
+        edgeTo[edges++] = to;
+    }
+
+    void addEpsilon(int from, int to) {
+        if (epsilons == epsFrom.length) {
+            int size = epsilons * 2;
+            epsFrom = Arrays.copyOf(epsFrom, size);
+            epsTo = Arrays.copyOf(epsTo, size);
+        }
+        epsFrom[epsilons] = from;
+        epsTo[epsilons++] = to;
+    }
+
+    int getStateCount() {
+        return states;
+    }
+
+    int getEdgeCount() {
+        return edges;
+    }
+
+    int getEpsilonCount() {
+        return epsilons;
+    }
+
+    /**
+     * Copies the states added since firstState along with the edges added since
+     * firstEdge and firstEpsilon, which must only join those states.
+     * @return the amount to add to a copied state's number to get its copy's
+     */
+    int copy(int firstState, int firstEdge, int firstEpsilon) {
+        int offset = states - firstState;
+        states += offset;
+        int edgeEnd = edges;
+        for (int e = firstEdge; e < edgeEnd; e++) {
+            addEdge(edgeFrom[e] + offset, edgeLo[e], edgeHi[e], edgeTo[e] + offset);
+        }
+        int epsEnd = epsilons;
+        for (int e = firstEpsilon; e < epsEnd; e++) {
+            addEpsilon(epsFrom[e] + offset, epsTo[e] + offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Compiles the arena
+     *
+     * @param start  the start state
+     * @param accept the accepting state
+     * @return the compiled automaton
+     */
+    CompiledAutomaton build(int start, int accept) {
+        int n = states;
+        int[] edgeStart = offsets(edgeFrom, edges, n);
+        char[] lo = new char[edges];
+        char[] hi = new char[edges];
+        int[] edgeTarget = new int[edges];
+        int[] fill = Arrays.copyOf(edgeStart, n);
+        for (int e = 0; e < edges; e++) {
+            int i = fill[edgeFrom[e]]++;
+            lo[i] = edgeLo[e];
+            hi[i] = edgeHi[e];
+            edgeTarget[i] = edgeTo[e];
+        }
+
+        int[] epsStart = offsets(epsFrom, epsilons, n);
+        int[] epsTarget = new int[epsilons];
+        fill = Arrays.copyOf(epsStart, n);
+        for (int e = 0; e < epsilons; e++) {
+            epsTarget[fill[epsFrom[e]]++] = epsTo[e];
+        }
+
+        int[] tags = new int[n];
+        Arrays.fill(tags, -1);
+        return new CompiledAutomaton(n, start, accept, edgeStart, lo, hi, edgeTarget, epsStart, epsTarget, tags);
+    }
+
+    /**
+     * Counts the edges leaving each state into the start offsets of their runs.
+     */
+    private static int[] offsets(int[] from, int count, int n) {
+        int[] start = new int[n + 1];
+        for (int e = 0; e < count; e++) {
+            start[from[e] + 1]++;
+        }
+        for (int s = 0; s < n; s++) {
+            start[s + 1] += start[s];
+        }
+        return start;
+    }
+}
@@ -1,16 +1,78 @@
 package edu.berkeley.eecs.cs164.pa1;
 
+import java.util.*;
+
 /**
  * This class parses a simple regular expression syntax into an NFA
+ *
+ * Besides literals, escapes, grouping, |, *, + and ?, the syntax has character classes:
+ * [abc], ranges such as [a-z], negated classes [^...], . for any character but newline,
+ * and the shorthands \d, \w and \s (negated as \D, \W and \S). A class becomes a
+ * single transition labelled with its {@link CharRanges}.
+ *
+ * Bounded repetition x{m}, x{m,} and x{m,n} is expanded into m copies of x followed by
+ * n - m nested optional copies, x(x(x)?)?, so that every skipped copy leaves through the
+ * same output state instead of stacking up epsilon paths the way x?x?x? does. x{m,} ends
+ * in x+ rather than a further copy. The states that repetitions expand to are capped
+ * across the whole pattern, nested repetitions included, so a short hostile pattern
+ * cannot allocate an enormous NFA, however many repetitions it strings together.
+ *
+ * A parser asked to capture groups numbers the parenthesized groups from 1 by their
+ * opening parenthesis and brackets each with two tagged states (see
+ * {@link AutomatonState#getTag()}): tag 2g where group g starts and 2g + 1 where it ends.
+ * {@link CaptureMatcher} reads the tags back as group spans.
  */
 public class RegexParser {
+    /**
+     * Default cap on the states all bounded repetitions in a pattern may expand to
+     */
+    public static final int DEFAULT_MAX_REPEAT_STATES = 20000;
 
     private char[] pattern;
     private char token;
     private int index;
+    private final int maxRepeatStates;
+    private final boolean captureGroups;
+    private int groups;
+    // States the repetitions parsed so far expanded to.
+    private long repeatStates;
+    private final int maxStates;
+    private final int maxEdges;
+    private int stateCount;
+    private int edgeCount;
+    private int epsilonCount;
 
     public RegexParser(String pattern) {
+        this(pattern, DEFAULT_MAX_REPEAT_STATES);
+    }
+
+    /**
+     * @param pattern         the pattern to parse
+     * @param maxRepeatStates the most states all bounded repetitions may expand to
+     */
+    public RegexParser(String pattern, int maxRepeatStates) {
+        this(pattern, maxRepeatStates, false);
+    }
+
+    /**
+     * @param pattern         the pattern to parse
+     * @param maxRepeatStates the most states all bounded repetitions may expand to
+     * @param captureGroups   whether to tag the boundaries of parenthesized groups
+     */
+    public RegexParser(String pattern, int maxRepeatStates, boolean captureGroups) {
+        this(pattern, maxRepeatStates, captureGroups, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxStates the most states the parser may build before giving up
+     * @param maxEdges  the most edges, character and epsilon, the parser may build before giving up
+     */
+    private RegexParser(String pattern, int maxRepeatStates, boolean captureGroups, int maxStates, int maxEdges) {
         this.pattern = pattern.toCharArray();
+        this.maxRepeatStates = maxRepeatStates;
+        this.captureGroups = captureGroups;
+        this.maxStates = maxStates;
+        this.maxEdges = maxEdges;
         index = 0;
         advance();
     }
@@ -31,13 +93,205 @@ public class RegexParser {
      * whatever "compilation" process you write for converting
      * regex strings to NFAs.
      *
+     * Parsers share no state, so any number of patterns can be compiled concurrently.
+     * The result is frozen and can be shared between matcher threads.
+     *
      * @param pattern the pattern to compile
-     * @return an NFA accepting the pattern
+     * @return a frozen NFA accepting the pattern
      * @throws RegexParseException upon encountering a parse error
      */
     public static Automaton parse(String pattern) {
-        RegexParser parser = new RegexParser(pattern);
-        return parser.expr();
+        return parse(pattern, DEFAULT_MAX_REPEAT_STATES);
+    }
+
+    /**
+     * Compiles a pattern, capping how far bounded repetitions may expand
+     *
+     * @param pattern         the pattern to compile
+     * @param maxRepeatStates the most states all bounded repetitions may expand to
+     * @return a frozen NFA accepting the pattern
+     * @throws RegexParseException upon encountering a parse error or an oversized repetition
+     */
+    public static Automaton parse(String pattern, int maxRepeatStates) {
+        RegexParser parser = new RegexParser(pattern, maxRepeatStates);
+        return parser.expr().freeze();
+    }
+
+    /**
+     * Compiles a pattern within a budget, giving up as soon as the states or edges built
+     * so far exceed it rather than after building the whole NFA. Repetitions are capped
+     * at the budget's state count. States and edges that end up unreachable, such as
+     * those of x{0}, are charged too.
+     *
+     * @param pattern the pattern to compile
+     * @param budget  the budget whose state and edge limits to parse within
+     * @return a frozen NFA accepting the pattern
+     * @throws PatternTooComplexException if the NFA grows over budget
+     */
+    static Automaton parse(String pattern, ComplexityBudget budget) {
+        RegexParser parser = new RegexParser(pattern, budget.getMaxStates(), false,
+                budget.getMaxStates(), budget.getMaxEdges());
+        return parser.expr().freeze();
+    }
+
+    /**
+     * Compiles a pattern, tagging where each parenthesized group starts and ends so a
+     * {@link CaptureMatcher} can report their spans
+     *
+     * @param pattern the pattern to compile
+     * @return a frozen, tagged NFA accepting the pattern
+     * @throws RegexParseException upon encountering a parse error
+     */
+    public static Automaton parseCapturing(String pattern) {
+        RegexParser parser = new RegexParser(pattern, DEFAULT_MAX_REPEAT_STATES, true);
+        return parser.expr().freeze();
+    }
+
+    /**
+     * Compiles a pattern straight into array form, for very large or deeply nested
+     * patterns such as generated keyword lists. Accepts the same strings as
+     * {@link #parse(String)}, which includes ignoring everything from a NUL character or
+     * a ')' that closes no group onwards.
+     *
+     * The pattern is read in one pass with an explicit stack of open groups instead of
+     * by recursion, so nesting depth is bounded only by the heap, and states are
+     * numbers in a {@link ProgramBuilder} rather than objects. The branches of an
+     * alternation share one fork and one join state however many there are, so a list
+     * of keywords stays flat and compiles in time linear in the pattern's length.
+     *
+     * @param pattern the pattern to compile
+     * @return the compiled NFA
+     * @throws RegexParseException upon encountering a parse error
+     */
+    public static CompiledAutomaton compile(String pattern) {
+        return compile(pattern, DEFAULT_MAX_REPEAT_STATES);
+    }
+
+    /**
+     * Compiles a pattern straight into array form, capping how far bounded repetitions
+     * may expand
+     *
+     * @param pattern         the pattern to compile
+     * @param maxRepeatStates the most states all bounded repetitions may expand to
+     * @return the compiled NFA
+     * @throws RegexParseException upon encountering a parse error or an oversized repetition
+     */
+    public static CompiledAutomaton compile(String pattern, int maxRepeatStates) {
+        RegexParser parser = new RegexParser(pattern, maxRepeatStates);
+        return parser.program(new ProgramBuilder());
+    }
+
+    private CompiledAutomaton program(ProgramBuilder b) {
+        Deque<Group> open = new ArrayDeque<Group>();
+        Group group = new Group(b);
+        // Like expr(), stop at a NUL or at a ')' that closes no group.
+        while (token != '\0') {
+            Fragment f;
+            if (token == '(') {
+                advance();
+                open.push(group);
+                group = new Group(b);
+                continue;
+            } else if (token == ')') {
+                if (open.isEmpty()) {
+                    break;
+                }
+                advance();
+                f = group.close();
+                group = open.pop();
+            } else if (token == '|') {
+                advance();
+                group.branch();
+                continue;
+            } else if (token == '\\') {
+                advance();
+                f = recognize(b, escape());
+                advance();
+            } else if (token == '[') {
+                advance();
+                f = recognize(b, charClass());
+                advance();
+            } else if (token == '.') {
+                advance();
+                f = recognize(b, CharRanges.DOT);
+            } else {
+                f = recognize(b, CharRanges.of(token, token));
+                advance();
+            }
+            group.append(quantify(b, f));
+        }
+        if (!open.isEmpty()) {
+            throw new RegexParseException("Parenthesis mismatched. Input: " + new String(pattern));
+        }
+        Fragment f = group.close();
+        return b.build(f.start, f.out);
+    }
+
+    /**
+     * Applies the quantifier following a fragment, if there is one.
+     */
+    private Fragment quantify(ProgramBuilder b, Fragment f) {
+        if (token == '+') {
+            advance();
+            return plus(b, f);
+        } else if (token == '*') {
+            advance();
+            return star(b, f);
+        } else if (token == '?') {
+            advance();
+            return option(b, f);
+        } else if (token == '{') {
+            advance();
+            return repeat(b, f);
+        }
+        return f;
+    }
+
+    /**
+     * Expands a bounded repetition of a fragment the same way {@link #repeat(Automaton)}
+     * does.
+     */
+    private Fragment repeat(ProgramBuilder b, Fragment f) {
+        int[] bounds = repeatBounds();
+        int min = bounds[0];
+        int max = bounds[1];
+        int copies = repeatCopies(min, max, b.getStateCount() - f.firstState);
+
+        if (max == 0) {
+            return empty(b);
+        }
+        if (max < 0 && min == 0) {
+            return star(b, f);
+        }
+
+        // Each copy is made from the one before, which is always the last thing added.
+        Fragment[] parts = new Fragment[copies];
+        parts[0] = f;
+        for (int i = 1; i < copies; i++) {
+            Fragment last = parts[i - 1];
+            int[] marks = marks(b);
+            int offset = b.copy(last.firstState, last.firstEdge, last.firstEpsilon);
+            parts[i] = new Fragment(last.start + offset, last.out + offset, marks[0], marks[1], marks[2]);
+        }
+
+        Fragment result = null;
+        int mandatory = max < 0 ? min - 1 : min;
+        for (int i = 0; i < mandatory; i++) {
+            result = result == null ? parts[i] : concat(b, result, parts[i]);
+        }
+
+        Fragment tail;
+        if (max < 0) {
+            tail = plus(b, parts[mandatory]);
+        } else if (max > min) {
+            tail = option(b, parts[max - 1]);
+            for (int i = max - 2; i >= min; i--) {
+                tail = option(b, concat(b, parts[i], tail));
+            }
+        } else {
+            return result;
+        }
+        return result == null ? tail : concat(b, result, tail);
     }
 
     private Automaton expr() {
@@ -74,29 +328,144 @@ public class RegexParser {
         } else if (token == '?') {
             advance();
             auto = option(auto);
+        } else if (token == '{') {
+            advance();
+            auto = repeat(auto);
         }
         return auto;
     }
 
+    /**
+     * Reads the bounds of a {m}, {m,} or {m,n} quantifier, whose '{' has been consumed,
+     * and applies them.
+     * @param a The automaton to repeat
+     * @return An automaton that recognizes a between m and n times
+     */
+    private Automaton repeat(Automaton a) {
+        int[] bounds = repeatBounds();
+        int min = bounds[0];
+        int max = bounds[1];
+        int copies = repeatCopies(min, max, states(a).size());
+
+        if (max == 0) {
+            return empty();
+        }
+        if (max < 0 && min == 0) {
+            return star(a);
+        }
+
+        // Wiring copies together adds edges to their output states, so all of them are
+        // cloned before any is wired. The original serves as the first copy.
+        List<Automaton> parts = new ArrayList<Automaton>(copies);
+        parts.add(a);
+        for (int i = 1; i < copies; i++) {
+            parts.add(copy(a));
+        }
+
+        Automaton auto = null;
+        int mandatory = max < 0 ? min - 1 : min;
+        for (int i = 0; i < mandatory; i++) {
+            auto = auto == null ? parts.get(i) : concat(auto, parts.get(i));
+        }
+
+        Automaton tail;
+        if (max < 0) {
+            tail = plus(parts.get(mandatory));
+        } else if (max > min) {
+            // Built inside out: x(x(x)?)? for three optional copies.
+            tail = option(parts.get(max - 1));
+            for (int i = max - 2; i >= min; i--) {
+                tail = option(concat(parts.get(i), tail));
+            }
+        } else {
+            return auto;
+        }
+        return auto == null ? tail : concat(auto, tail);
+    }
+
+    /**
+     * Reads the bounds of a {m}, {m,} or {m,n} quantifier, whose '{' has been consumed.
+     * @return min then max, which is -1 if there is no upper bound
+     */
+    private int[] repeatBounds() {
+        int min = number();
+        int max = min;
+        if (token == ',') {
+            advance();
+            max = token == '}' ? -1 : number();
+        }
+        if (token != '}') {
+            throw new RegexParseException("Repetition not closed. Input: " + new String(pattern));
+        }
+        advance();
+        if (max >= 0 && max < min) {
+            throw new RegexParseException("Repetition bounds out of order. Input: " + new String(pattern));
+        }
+        return new int[]{min, max};
+    }
+
+    /**
+     * Charges a repetition to the state cap, which covers every repetition in the
+     * pattern so far. A repetition of an expanded repetition is charged for all the
+     * states it copies.
+     * @param size the number of states in the repeated automaton
+     * @return the number of copies the repetition needs
+     */
+    private int repeatCopies(int min, int max, int size) {
+        // Every copy costs as many states as the original, and x{m,} only needs m of them.
+        int copies = max < 0 ? Math.max(min, 1) : max;
+        repeatStates += (long) copies * size;
+        if (repeatStates > maxRepeatStates) {
+            throw new RegexParseException("Repetitions expand to more than " + maxRepeatStates
+                    + " states. Input: " + new String(pattern));
+        }
+        return copies;
+    }
+
+    /**
+     * Reads a decimal repetition bound.
+     * @return the bound
+     */
+    private int number() {
+        if (token < '0' || token > '9') {
+            throw new RegexParseException("Expected a repetition bound. Input: " + new String(pattern));
+        }
+        long value = 0;
+        while (token >= '0' && token <= '9') {
+            value = value * 10 + (token - '0');
+            if (value > maxRepeatStates) {
+                throw new RegexParseException("Repetition bound exceeds " + maxRepeatStates
+                        + ". Input: " + new String(pattern));
+            }
+            advance();
+        }
+        return (int) value;
+    }
+
     private Automaton atom() {
         Automaton auto;
         if (token == '\\') {
             advance();
-            if (token == 'n') {
-                auto = recognize('\n');
-            } else if (token == 't') {
-                auto = recognize('\t');
-            } else {
-                auto = recognize(token);
-            }
+            auto = recognize(escape());
+            advance();
+        } else if (token == '[') {
+            advance();
+            auto = recognize(charClass());
+            advance();
+        } else if (token == '.') {
             advance();
+            auto = recognize(CharRanges.DOT);
         } else if (token == '(') {
             advance();
+            int group = ++groups;
             auto = expr();
             if (token != ')') {
                 throw new RegexParseException("Parenthesis mismatched. Input: " + new String(pattern));
             }
             advance();
+            if (captureGroups) {
+                auto = capture(auto, group);
+            }
         } else {
             auto = recognize(token);
             advance();
@@ -105,11 +474,186 @@ public class RegexParser {
         return auto;
     }
 
+    /**
+     * Reads the escape whose character is the current token, without advancing past it.
+     * @return the characters the escape stands for
+     */
+    private CharRanges escape() {
+        switch (token) {
+            case 'n':
+                return CharRanges.of('\n', '\n');
+            case 't':
+                return CharRanges.of('\t', '\t');
+            case 'd':
+                return CharRanges.DIGIT;
+            case 'D':
+                return CharRanges.DIGIT.complement();
+            case 'w':
+                return CharRanges.WORD;
+            case 'W':
+                return CharRanges.WORD.complement();
+            case 's':
+                return CharRanges.SPACE;
+            case 'S':
+                return CharRanges.SPACE.complement();
+            default:
+                return CharRanges.of(token, token);
+        }
+    }
+
+    /**
+     * Reads the body of a bracketed class, up to the closing ']' which is left as the
+     * current token. A ']' first in the class and a '-' first or last in it are literal.
+     * @return the characters of the class
+     */
+    private CharRanges charClass() {
+        boolean negated = false;
+        if (token == '^') {
+            negated = true;
+            advance();
+        }
+
+        CharRanges chars = null;
+        boolean first = true;
+        while (first || token != ']') {
+            if (token == '\0' && index >= pattern.length) {
+                throw new RegexParseException("Character class not closed. Input: " + new String(pattern));
+            }
+            first = false;
+            CharRanges item;
+            if (token == '\\') {
+                advance();
+                item = escape();
+            } else {
+                item = CharRanges.of(token, token);
+            }
+            advance();
+
+            if (token == '-' && index < pattern.length && pattern[index] != ']') {
+                advance();
+                char hi = token;
+                if (token == '\\') {
+                    advance();
+                    CharRanges escaped = escape();
+                    if (!escaped.isSingleton()) {
+                        throw new RegexParseException("Class shorthand cannot end a range. Input: " + new String(pattern));
+                    }
+                    hi = escaped.getLow(0);
+                }
+                if (!item.isSingleton() || hi < item.getLow(0)) {
+                    throw new RegexParseException("Invalid range in character class. Input: " + new String(pattern));
+                }
+                item = CharRanges.of(item.getLow(0), hi);
+                advance();
+            }
+            chars = chars == null ? item : chars.union(item);
+        }
+        return negated ? chars.complement() : chars;
+    }
+
+    /**
+     * Clones an automaton under construction, state for state.
+     * @param a Some automaton
+     * @return An automaton with fresh states and the same transitions as a
+     */
+    private Automaton copy(Automaton a) {
+        List<AutomatonState> states = states(a);
+        int edges = 0;
+        int epsilons = 0;
+        for (AutomatonState state : states) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() == null) {
+                    epsilons += entry.getValue().size();
+                } else {
+                    edges += entry.getValue().size();
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                edges += entry.getKey().getRangeCount() * entry.getValue().size();
+            }
+        }
+        charge(states.size(), edges, epsilons);
+
+        Map<AutomatonState, AutomatonState> copies = new HashMap<AutomatonState, AutomatonState>();
+        for (AutomatonState state : states) {
+            AutomatonState copy = new AutomatonState();
+            copy.setTag(state.getTag());
+            copies.put(state, copy);
+        }
+        for (Map.Entry<AutomatonState, AutomatonState> state : copies.entrySet()) {
+            AutomatonState copy = state.getValue();
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getKey().getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (entry.getKey() == null) {
+                        copy.addEpsilonTransition(copies.get(target));
+                    } else {
+                        copy.addTransition(entry.getKey(), copies.get(target));
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : state.getKey().getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    copy.addTransition(entry.getKey(), copies.get(target));
+                }
+            }
+        }
+        return new Automaton(copies.get(a.getStart()), copies.get(a.getOut()));
+    }
+
+    /**
+     * Lists the states of an automaton, which may still be under construction.
+     * @param a Some automaton
+     * @return Every state reachable from the start of a, and its output state
+     */
+    static List<AutomatonState> states(Automaton a) {
+        Set<AutomatonState> visited = new HashSet<AutomatonState>();
+        List<AutomatonState> states = new ArrayList<AutomatonState>();
+        visited.add(a.getStart());
+        states.add(a.getStart());
+        for (int i = 0; i < states.size(); i++) {
+            AutomatonState state = states.get(i);
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        states.add(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        states.add(target);
+                    }
+                }
+            }
+        }
+        if (visited.add(a.getOut())) {
+            states.add(a.getOut());
+        }
+        return states;
+    }
+
+    /**
+     * Counts states and edges about to be built against the parser's limits.
+     * Edges are counted the way {@link CompiledAutomaton} counts them: a class
+     * transition is one edge per range.
+     */
+    private void charge(int states, int edges, int epsilons) {
+        stateCount += states;
+        edgeCount += edges;
+        epsilonCount += epsilons;
+        if (stateCount > maxStates || (long) edgeCount + epsilonCount > maxEdges) {
+            Complexity complexity = Complexity.partial(stateCount, edgeCount, epsilonCount);
+            throw new PatternTooComplexException("Pattern is over budget: " + complexity, complexity);
+        }
+    }
+
     /**
      * Creates an NFA that recognizes an empty factor.
      * @return An automaton that always suceeds.
      */
     private Automaton empty() {
+        charge(2, 0, 1);
         AutomatonState in = new AutomatonState();
         AutomatonState out = new AutomatonState();
         in.addEpsilonTransition(out);
@@ -123,6 +667,7 @@ public class RegexParser {
      * @return An automaton that recognizes a OR b
      */
     private Automaton alt(Automaton a, Automaton b) {
+        charge(2, 0, 4);
         AutomatonState altIn = new AutomatonState();
         altIn.addEpsilonTransition(a.getStart());
         altIn.addEpsilonTransition(b.getStart());
@@ -141,28 +686,66 @@ public class RegexParser {
      * @return An automaton that recognizes a THEN b
      */
     private Automaton concat(Automaton a, Automaton b) {
+        charge(0, 0, 1);
         a.getOut().addEpsilonTransition(b.getStart());
         return new Automaton(a.getStart(), b.getOut());
     }
 
+    /**
+     * Creates an NFA that records the span of a group.
+     * @param a The group's NFA
+     * @param group The number of the group
+     * @return An automaton that recognizes a between states tagged with the group's slots
+     */
+    private Automaton capture(Automaton a, int group) {
+        charge(2, 0, 2);
+        AutomatonState open = new AutomatonState();
+        AutomatonState close = new AutomatonState();
+        open.setTag(2 * group);
+        close.setTag(2 * group + 1);
+
+        open.addEpsilonTransition(a.getStart());
+        a.getOut().addEpsilonTransition(close);
+
+        return new Automaton(open, close);
+    }
+
     /**
      * Creates an NFA that recognizes some character.
      * @param ch The character to recognize
      * @return An automaton that recognizes ch
      */
     private Automaton recognize(char ch) {
+        charge(2, 1, 0);
         AutomatonState in = new AutomatonState();
         AutomatonState out = new AutomatonState();
         in.addTransition(ch, out);
         return new Automaton(in, out);
     }
 
+    /**
+     * Creates an NFA that recognizes any character of a class.
+     * @param chars The characters to recognize
+     * @return An automaton that recognizes one character of chars
+     */
+    private Automaton recognize(CharRanges chars) {
+        if (chars.isSingleton()) {
+            return recognize(chars.getLow(0));
+        }
+        charge(2, chars.getRangeCount(), 0);
+        AutomatonState in = new AutomatonState();
+        AutomatonState out = new AutomatonState();
+        in.addTransition(chars, out);
+        return new Automaton(in, out);
+    }
+
     /**
      * Creates an NFA that reflects the kleene star operator in regex.
      * @param a The NFA to recognize.
      * @return An automaton that recognizes a at least once.
      */
     private Automaton star(Automaton a) {
+        charge(2, 0, 3);
         AutomatonState in = new AutomatonState();
         AutomatonState out = new AutomatonState();
 
@@ -179,6 +762,7 @@ public class RegexParser {
      * @return An automaton that recognizes a at least once
      */
     private Automaton plus(Automaton a) {
+        charge(2, 0, 3);
         AutomatonState in = new AutomatonState();
         AutomatonState out = new AutomatonState();
 
@@ -195,6 +779,7 @@ public class RegexParser {
      * @return An automaton that recgonizes a zero or one times.
      */
     private Automaton option(Automaton a) {
+        charge(2, 0, 3);
         AutomatonState in = new AutomatonState();
         AutomatonState out = new AutomatonState();
 
@@ -205,4 +790,124 @@ public class RegexParser {
         return new Automaton(in, out);
     }
 
+    private static Fragment empty(ProgramBuilder b) {
+        int[] marks = marks(b);
+        int in = b.addState();
+        int out = b.addState();
+        b.addEpsilon(in, out);
+        return new Fragment(in, out, marks[0], marks[1], marks[2]);
+    }
+
+    private static Fragment recognize(ProgramBuilder b, CharRanges chars) {
+        int[] marks = marks(b);
+        int in = b.addState();
+        int out = b.addState();
+        for (int r = 0; r < chars.getRangeCount(); r++) {
+            b.addEdge(in, chars.getLow(r), chars.getHigh(r), out);
+        }
+        return new Fragment(in, out, marks[0], marks[1], marks[2]);
+    }
+
+    private static Fragment concat(ProgramBuilder b, Fragment first, Fragment second) {
+        b.addEpsilon(first.out, second.start);
+        return new Fragment(first.start, second.out, first.firstState, first.firstEdge, first.firstEpsilon);
+    }
+
+    private static Fragment star(ProgramBuilder b, Fragment f) {
+        int in = b.addState();
+        int out = b.addState();
+        b.addEpsilon(in, f.start);
+        b.addEpsilon(in, out);
+        b.addEpsilon(f.out, in);
+        return new Fragment(in, out, f.firstState, f.firstEdge, f.firstEpsilon);
+    }
+
+    private static Fragment plus(ProgramBuilder b, Fragment f) {
+        int in = b.addState();
+        int out = b.addState();
+        b.addEpsilon(in, f.start);
+        b.addEpsilon(f.out, in);
+        b.addEpsilon(f.out, out);
+        return new Fragment(in, out, f.firstState, f.firstEdge, f.firstEpsilon);
+    }
+
+    private static Fragment option(ProgramBuilder b, Fragment f) {
+        int in = b.addState();
+        int out = b.addState();
+        b.addEpsilon(in, f.start);
+        b.addEpsilon(in, out);
+        b.addEpsilon(f.out, out);
+        return new Fragment(in, out, f.firstState, f.firstEdge, f.firstEpsilon);
+    }
+
+    private static int[] marks(ProgramBuilder b) {
+        return new int[]{b.getStateCount(), b.getEdgeCount(), b.getEpsilonCount()};
+    }
+
+    /**
+     * A piece of NFA in a {@link ProgramBuilder}: its entry and exit states, and where
+     * its states and edges begin. Everything added from there on belongs to it until it
+     * is joined to something else.
+     */
+    private static final class Fragment {
+        final int start;
+        final int out;
+        final int firstState;
+        final int firstEdge;
+        final int firstEpsilon;
+
+        Fragment(int start, int out, int firstState, int firstEdge, int firstEpsilon) {
+            this.start = start;
+            this.out = out;
+            this.firstState = firstState;
+            this.firstEdge = firstEdge;
+            this.firstEpsilon = firstEpsilon;
+        }
+    }
+
+    /**
+     * An open group, or the whole pattern: the branches read so far and the
+     * concatenation being read.
+     */
+    private static final class Group {
+        private final ProgramBuilder b;
+        private final int[] marks;
+        private final List<Fragment> branches = new ArrayList<Fragment>();
+        private Fragment term;
+
+        Group(ProgramBuilder b) {
+            this.b = b;
+            this.marks = marks(b);
+        }
+
+        void append(Fragment f) {
+            term = term == null ? f : concat(b, term, f);
+        }
+
+        /**
+         * Ends the current branch at a '|'.
+         */
+        void branch() {
+            branches.add(term == null ? empty(b) : term);
+            term = null;
+        }
+
+        /**
+         * Ends the group, joining all of its branches with a single fork and join.
+         */
+        Fragment close() {
+            branch();
+            if (branches.size() == 1) {
+                Fragment f = branches.get(0);
+                return new Fragment(f.start, f.out, marks[0], marks[1], marks[2]);
+            }
+            int in = b.addState();
+            int out = b.addState();
+            for (Fragment f : branches) {
+                b.addEpsilon(in, f.start);
+                b.addEpsilon(f.out, out);
+            }
+            return new Fragment(in, out, marks[0], marks[1], marks[2]);
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * A set of small integers in the style of Briggs and Torczon. Membership, insertion and
+ * clearing are all constant time, and iteration order is insertion order. The sparse
+ * array is never initialized, which is fine because every lookup is cross-checked
+ * against the dense array.
+ */
+final class SparseSet {
+    private final int[] dense;
+    private final int[] sparse;
+    private int size;
+
+    SparseSet(int capacity) {
+        dense = new int[capacity];
+        sparse = new int[capacity];
+    }
+
+    boolean contains(int value) {
+        int i = sparse[value];
+        return i < size && dense[i] == value;
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param value the value to add, in [0, capacity)
+     * @return true if the value was not already present
+     */
+    boolean add(int value) {
+        if (contains(value)) {
+            return false;
+        }
+        dense[size] = value;
+        sparse[value] = size++;
+        return true;
+    }
+
+    int get(int index) {
+        return dense[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Keeps only the first values added
+     *
+     * @param size the number of values to keep
+     */
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+}
@@ -0,0 +1,256 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.*;
+
+/**
+ * This class rewrites an NFA over characters into an NFA over the bytes of their UTF-8
+ * encoding, so input held as bytes can be matched without being decoded. Every byte is
+ * read as the char of the same value, 0 to 255, so the result runs on any of the
+ * existing matchers, and {@link Utf8Matcher} feeds it bytes directly.
+ *
+ * Each range edge becomes the byte sequences of the characters in it, split the way
+ * RE2 splits them: every sequence is a run of byte ranges, so even a range of thousands
+ * of characters needs only a few sequences, not one per character.
+ *
+ * Characters outside the Basic Multilingual Plane are two chars, a high surrogate then a
+ * low one, but four bytes, whose third byte holds bits of both. The edges reading a high
+ * surrogate are therefore joined to the low surrogate edges that can follow them, so the
+ * lowered NFA accepts exactly the UTF-8 encodings of the strings the original accepts.
+ * Malformed UTF-8 is never accepted.
+ */
+public final class Utf8Lowering {
+    private static final int[] TWO_BYTES = {5, 6};
+    private static final int[] THREE_BYTES = {4, 6, 6};
+    // A supplementary character's code point >> 10: 3 bits in the lead byte, 6 in the
+    // second byte and 2 in the third.
+    private static final int[] HIGH_SURROGATE = {3, 6, 2};
+    private static final int NO_STATE = -1;
+
+    private final CompiledAutomaton program;
+    private final List<List<int[]>> edges = new ArrayList<List<int[]>>();
+    private final Map<Integer, int[]> lowSurrogateStates = new HashMap<Integer, int[]>();
+
+    private Utf8Lowering(CompiledAutomaton program) {
+        this.program = program;
+    }
+
+    /**
+     * Lowers an NFA to UTF-8 bytes
+     *
+     * @param nfa the nfa to lower, which is left unchanged
+     * @return a frozen NFA accepting the UTF-8 encodings of the strings nfa accepts
+     */
+    public static Automaton lower(Automaton nfa) {
+        return new Utf8Lowering(CompiledAutomaton.compile(nfa)).build();
+    }
+
+    private Automaton build() {
+        CompiledAutomaton p = program;
+        for (int s = 0; s < p.stateCount; s++) {
+            edges.add(new ArrayList<int[]>());
+        }
+        for (int s = 0; s < p.stateCount; s++) {
+            for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                lowerEdge(s, p.edgeLo[e], p.edgeHi[e], p.edgeTarget[e]);
+            }
+        }
+
+        AutomatonState[] states = new AutomatonState[edges.size()];
+        for (int s = 0; s < states.length; s++) {
+            states[s] = new AutomatonState();
+        }
+        for (int s = 0; s < p.stateCount; s++) {
+            for (int e = p.epsStart[s]; e < p.epsStart[s + 1]; e++) {
+                states[s].addEpsilonTransition(states[p.epsTarget[e]]);
+            }
+        }
+        for (int s = 0; s < states.length; s++) {
+            for (int[] edge : edges.get(s)) {
+                if (edge[0] == edge[1]) {
+                    states[s].addTransition((char) edge[0], states[edge[2]]);
+                } else {
+                    states[s].addTransition(CharRanges.of((char) edge[0], (char) edge[1]), states[edge[2]]);
+                }
+            }
+        }
+        // An unreachable accept state stays unreachable.
+        AutomatonState out = p.accept >= 0 ? states[p.accept] : new AutomatonState();
+        return new Automaton(states[p.start], out).freeze();
+    }
+
+    private void lowerEdge(int from, int lo, int hi, int to) {
+        lowerBmp(from, lo, Math.min(hi, 0x7F), to, null);
+        lowerBmp(from, Math.max(lo, 0x80), Math.min(hi, 0x7FF), to, TWO_BYTES);
+        lowerBmp(from, Math.max(lo, 0x800), Math.min(hi, 0xD7FF), to, THREE_BYTES);
+        lowerBmp(from, Math.max(lo, 0xE000), hi, to, THREE_BYTES);
+
+        // Low surrogates are only reached through the high surrogate before them.
+        int highLo = Math.max(lo, 0xD800);
+        int highHi = Math.min(hi, 0xDBFF);
+        if (highLo <= highHi) {
+            int[] lowStates = lowSurrogateStates(to);
+            List<int[]> sequences = new ArrayList<int[]>();
+            split(highLo - 0xD800 + 0x40, highHi - 0xD800 + 0x40, HIGH_SURROGATE, 0, new int[6], sequences);
+            for (int[] digits : sequences) {
+                int lead = addState();
+                addEdge(from, 0xF0 | digits[0], 0xF0 | digits[1], lead);
+                int second = addState();
+                addEdge(lead, 0x80 | digits[2], 0x80 | digits[3], second);
+                // The third byte holds the last 2 bits of the high surrogate and the first 4
+                // of the low one; runs of bytes leading to the same state share an edge.
+                int first = 0x80 | digits[4] << 4;
+                int last = 0x80 | digits[5] << 4 | 0xF;
+                int runStart = first;
+                for (int b = first; b <= last; b++) {
+                    int target = lowStates[b & 0xF];
+                    if (b == last || lowStates[(b + 1) & 0xF] != target) {
+                        if (target != NO_STATE) {
+                            addEdge(second, runStart, b, target);
+                        }
+                        runStart = b + 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the byte sequences of the characters [lo, hi], which all encode to the same
+     * number of bytes.
+     * @param widths the bits each byte holds, or null for single bytes
+     */
+    private void lowerBmp(int from, int lo, int hi, int to, int[] widths) {
+        if (lo > hi) {
+            return;
+        }
+        if (widths == null) {
+            addEdge(from, lo, hi, to);
+            return;
+        }
+        int leadBits = widths.length == 2 ? 0xC0 : 0xE0;
+        List<int[]> sequences = new ArrayList<int[]>();
+        split(lo, hi, widths, 0, new int[2 * widths.length], sequences);
+        for (int[] digits : sequences) {
+            int state = from;
+            for (int i = 0; i < widths.length; i++) {
+                int bits = i == 0 ? leadBits : 0x80;
+                int next = i == widths.length - 1 ? to : addState();
+                addEdge(state, bits | digits[2 * i], bits | digits[2 * i + 1], next);
+                state = next;
+            }
+        }
+    }
+
+    /**
+     * The states that read the fourth byte of a supplementary character after reaching
+     * a state on its high surrogate, one for each value of the low surrogate's first 4
+     * bits. Values with the same fourth byte edges share a state.
+     * @return the states, NO_STATE where no low surrogate can follow
+     */
+    private int[] lowSurrogateStates(int state) {
+        int[] result = lowSurrogateStates.get(state);
+        if (result != null) {
+            return result;
+        }
+        CompiledAutomaton p = program;
+        long[] closure = new long[p.words];
+        p.addClosure(closure, state, new int[p.stateCount]);
+
+        result = new int[16];
+        Map<List<Integer>, Integer> shared = new HashMap<List<Integer>, Integer>();
+        for (int nibble = 0; nibble < 16; nibble++) {
+            int base = 0xDC00 | nibble << 6;
+            List<Integer> fourth = new ArrayList<Integer>();
+            for (int s = 0; s < p.stateCount; s++) {
+                if (!CompiledAutomaton.isSet(closure, 0, s)) {
+                    continue;
+                }
+                for (int e = p.edgeStart[s]; e < p.edgeStart[s + 1]; e++) {
+                    int lo = Math.max(p.edgeLo[e], base);
+                    int hi = Math.min(p.edgeHi[e], base + 0x3F);
+                    if (lo <= hi) {
+                        fourth.add(0x80 | (lo - base));
+                        fourth.add(0x80 | (hi - base));
+                        fourth.add(p.edgeTarget[e]);
+                    }
+                }
+            }
+            if (fourth.isEmpty()) {
+                result[nibble] = NO_STATE;
+                continue;
+            }
+            Integer id = shared.get(fourth);
+            if (id == null) {
+                id = addState();
+                for (int i = 0; i < fourth.size(); i += 3) {
+                    addEdge(id, fourth.get(i), fourth.get(i + 1), fourth.get(i + 2));
+                }
+                shared.put(fourth, id);
+            }
+            result[nibble] = id;
+        }
+        lowSurrogateStates.put(state, result);
+        return result;
+    }
+
+    /**
+     * Splits [lo, hi] into runs of numbers whose digits, widths[i] bits each, range
+     * independently, so each run is one byte range per digit.
+     * @param digits the digit ranges fixed so far, lo then hi for each digit
+     * @param out receives each run as its digit ranges
+     */
+    private static void split(int lo, int hi, int[] widths, int level, int[] digits, List<int[]> out) {
+        if (level == widths.length - 1) {
+            int[] run = digits.clone();
+            run[2 * level] = lo;
+            run[2 * level + 1] = hi;
+            out.add(run);
+            return;
+        }
+        int shift = 0;
+        for (int i = level + 1; i < widths.length; i++) {
+            shift += widths[i];
+        }
+        int mask = (1 << shift) - 1;
+        int loTop = lo >>> shift;
+        int hiTop = hi >>> shift;
+        if (loTop == hiTop) {
+            split(lo & mask, hi & mask, widths, level + 1, with(digits, level, loTop, loTop), out);
+            return;
+        }
+        int first = loTop;
+        int last = hiTop;
+        if ((lo & mask) != 0) {
+            split(lo & mask, mask, widths, level + 1, with(digits, level, loTop, loTop), out);
+            first++;
+        }
+        if ((hi & mask) != mask) {
+            split(0, hi & mask, widths, level + 1, with(digits, level, hiTop, hiTop), out);
+            last--;
+        }
+        if (first <= last) {
+            int[] run = with(digits, level, first, last);
+            for (int i = level + 1; i < widths.length; i++) {
+                run[2 * i] = 0;
+                run[2 * i + 1] = (1 << widths[i]) - 1;
+            }
+            out.add(run);
+        }
+    }
+
+    private static int[] with(int[] digits, int level, int lo, int hi) {
+        int[] result = digits.clone();
+        result[2 * level] = lo;
+        result[2 * level + 1] = hi;
+        return result;
+    }
+
+    private int addState() {
+        edges.add(new ArrayList<int[]>());
+        return edges.size() - 1;
+    }
+
+    private void addEdge(int from, int lo, int hi, int to) {
+        edges.get(from).add(new int[]{lo, hi, to});
+    }
+}
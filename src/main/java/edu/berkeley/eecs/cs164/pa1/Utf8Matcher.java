@@ -0,0 +1,65 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class matches UTF-8 encoded input held in byte arrays or {@link ByteBuffer}s,
+ * heap or direct, without decoding it. The NFA is lowered to bytes by
+ * {@link Utf8Lowering} and run by an {@link NFAMatcher}, one byte per step. Buffers are
+ * read with absolute gets, so their position and limit are left as they were.
+ *
+ * Matchers reuse their state sets between inputs, so they are not thread-safe; give each
+ * thread its own.
+ */
+public class Utf8Matcher {
+    private final NFAMatcher matcher;
+
+    /**
+     * Create a new matcher from a given NFA structure
+     *
+     * @param nfa the nfa to match with, over characters
+     */
+    public Utf8Matcher(Automaton nfa) {
+        this.matcher = new NFAMatcher(CompiledAutomaton.compile(Utf8Lowering.lower(nfa)));
+    }
+
+    /**
+     * Determines whether or not the UTF-8 bytes in a slice of an array encode a text
+     * accepted by the NFA
+     *
+     * @param bytes  array holding the input
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return true if the bytes are well-formed and their text is accepted, else false
+     */
+    public boolean matches(byte[] bytes, int offset, int length) {
+        matcher.reset();
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (!matcher.feed((char) (bytes[i] & 0xFF))) {
+                return false;
+            }
+        }
+        return matcher.isAccepted();
+    }
+
+    /**
+     * Determines whether or not the UTF-8 bytes between a buffer's position and limit
+     * encode a text accepted by the NFA
+     *
+     * @param buffer the input
+     * @return true if the bytes are well-formed and their text is accepted, else false
+     */
+    public boolean matches(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return matches(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        matcher.reset();
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (!matcher.feed((char) (buffer.get(i) & 0xFF))) {
+                return false;
+            }
+        }
+        return matcher.isAccepted();
+    }
+}
@@ -0,0 +1,31 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class AutomatonStateTest {
+    @Test
+    public void testStatesAreKeyedById() throws Exception {
+        AutomatonState a = new AutomatonState();
+        AutomatonState b = new AutomatonState();
+        Assert.assertFalse(a.equals(b));
+        Assert.assertEquals(a, a);
+        Assert.assertEquals(a.getMyId(), a.hashCode());
+    }
+
+    @Test
+    public void testSetsStayValidWhileGrowing() throws Exception {
+        AutomatonState a = new AutomatonState();
+        AutomatonState b = new AutomatonState();
+        Set<AutomatonState> states = new HashSet<AutomatonState>();
+        states.add(a);
+        a.addTransition('x', b);
+        a.addEpsilonTransition(b);
+        a.addTransition(CharRanges.DIGIT, b);
+        Assert.assertTrue(states.contains(a));
+        Assert.assertFalse(states.add(a));
+    }
+}
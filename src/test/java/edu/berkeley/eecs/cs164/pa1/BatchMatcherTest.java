@@ -0,0 +1,78 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class BatchMatcherTest {
+    private static final String PATTERN = "[a-f0-9]{4}-[a-f0-9]{2,4}";
+
+    private static List<String> inputs(int count) {
+        Random random = new Random(count);
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            char[] chars = new char[4 + random.nextInt(6)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = "0af-x".charAt(random.nextInt(5));
+            }
+            inputs.add(new String(chars));
+        }
+        return inputs;
+    }
+
+    private static BitSet expected(List<String> inputs) {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse(PATTERN));
+        BitSet expected = new BitSet();
+        for (int i = 0; i < inputs.size(); i++) {
+            if (simulator.matches(inputs.get(i))) {
+                expected.set(i);
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    public void testList() throws Exception {
+        BatchMatcher matcher = new BatchMatcher(RegexParser.parse("ab*"));
+
+        Assert.assertEquals("{0, 2, 3}", matcher.matches(Arrays.asList("a", "b", "abbb", "ab", "")).toString());
+        Assert.assertEquals("{1}", matcher.matches(new LinkedList<String>(Arrays.asList("x", "a"))).toString());
+        Assert.assertTrue(matcher.matches(new ArrayList<String>()).isEmpty());
+    }
+
+    @Test
+    public void testPacked() throws Exception {
+        List<String> inputs = inputs(1000);
+        StringBuilder chars = new StringBuilder();
+        int[] offsets = new int[inputs.size() + 1];
+        for (int i = 0; i < inputs.size(); i++) {
+            chars.append(inputs.get(i));
+            offsets[i + 1] = chars.length();
+        }
+        BatchMatcher matcher = new BatchMatcher(RegexParser.parse(PATTERN));
+
+        BitSet result = matcher.matches(chars.toString().toCharArray(), offsets);
+        Assert.assertEquals(expected(inputs), result);
+        Assert.assertFalse(result.isEmpty());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> inputs = inputs(10007);
+            BatchMatcher matcher = new BatchMatcher(RegexParser.parse(PATTERN), pool, 100);
+
+            Assert.assertEquals(expected(inputs), matcher.matches(inputs));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
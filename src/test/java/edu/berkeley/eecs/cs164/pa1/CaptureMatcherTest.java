@@ -0,0 +1,93 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class CaptureMatcherTest {
+    /**
+     * Matches with and without the one-pass tables, which have to agree.
+     */
+    private static GroupMatch match(String regex, String text) {
+        Automaton nfa = RegexParser.parseCapturing(regex);
+        GroupMatch pike = new CaptureMatcher(nfa, false).match(text);
+        GroupMatch fast = new CaptureMatcher(nfa).match(text);
+        Assert.assertEquals(pike, fast);
+        Assert.assertEquals(pike != null, new NFASimulator(nfa).matches(text));
+        return pike;
+    }
+
+    @Test
+    public void testGroups() throws Exception {
+        GroupMatch match = match("(\\d+)-(\\d+)", "12-345");
+        Assert.assertEquals(2, match.getGroupCount());
+        Assert.assertEquals(new Match(0, 6), match.group(0));
+        Assert.assertEquals(new Match(0, 2), match.group(1));
+        Assert.assertEquals(new Match(3, 6), match.group(2));
+        Assert.assertNull(match("(\\d+)-(\\d+)", "12-"));
+    }
+
+    @Test
+    public void testNestedAndUnmatchedGroups() throws Exception {
+        GroupMatch match = match("((a)|(b))*c", "abc");
+        Assert.assertEquals("0=[0, 3) 1=[1, 2) 2=[0, 1) 3=[1, 2)", match.toString());
+
+        match = match("(x)?y", "y");
+        Assert.assertNull(match.group(1));
+        Assert.assertEquals(-1, match.getStart(1));
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        // Greedy repetition takes as much as it can, alternatives are tried from the left.
+        Assert.assertEquals(new Match(0, 3), match("(a*)(a*)", "aaa").group(1));
+        Assert.assertEquals(new Match(0, 1), match("(a?)(a*)", "aa").group(1));
+        Assert.assertEquals(new Match(0, 1), match("(a|ab)(b?)", "ab").group(1));
+        Assert.assertEquals(new Match(2, 3), match("(.)*", "abc").group(1));
+        Assert.assertEquals(new Match(2, 4), match("(ab){1,3}", "abab").group(1));
+    }
+
+    @Test
+    public void testOnePass() throws Exception {
+        Assert.assertTrue(new CaptureMatcher(RegexParser.parseCapturing("(\\d+)-(\\d+)")).isOnePass());
+        Assert.assertTrue(new CaptureMatcher(RegexParser.parseCapturing("([a-z]+)@([a-z.]+)")).isOnePass());
+        Assert.assertFalse(new CaptureMatcher(RegexParser.parseCapturing("(a*)(a*)")).isOnePass());
+        Assert.assertFalse(new CaptureMatcher(RegexParser.parseCapturing("(a|ab)c")).isOnePass());
+
+        GroupMatch match = match("([a-z]+)@([a-z.]+)", "me@cs.berkeley.edu");
+        Assert.assertEquals(new Match(3, 18), match.group(2));
+        Assert.assertNull(match("([a-z]+)@([a-z.]+)", "me@"));
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        CaptureMatcher matcher = new CaptureMatcher(RegexParser.parseCapturing("(\\w+)=(\\d*)"));
+        GroupMatch match = matcher.find("x, key=42;", 0);
+        Assert.assertEquals(new Match(3, 9), match.group(0));
+        Assert.assertEquals(new Match(3, 6), match.group(1));
+        Assert.assertEquals(new Match(7, 9), match.group(2));
+
+        List<GroupMatch> matches = matcher.findAll("a=1 b= c=33");
+        Assert.assertEquals(3, matches.size());
+        Assert.assertEquals(new Match(4, 6), matches.get(1).group(0));
+        Assert.assertEquals(new Match(6, 6), matches.get(1).group(2));
+        Assert.assertEquals(new Match(9, 11), matches.get(2).group(2));
+        Assert.assertNull(matcher.find("no pairs", 0));
+    }
+
+    @Test
+    public void testMatcherReuse() throws Exception {
+        CaptureMatcher matcher = new CaptureMatcher(RegexParser.parseCapturing("(a+)(b*)"), false);
+        Assert.assertEquals(new Match(2, 4), matcher.match("aabb").group(2));
+        Assert.assertNull(matcher.match("ba"));
+        Assert.assertEquals(new Match(0, 1), matcher.match("a").group(1));
+        Assert.assertEquals(new Match(1, 1), matcher.match("a").group(2));
+    }
+
+    @Test
+    public void testPlainParseHasNoGroups() throws Exception {
+        Assert.assertEquals(0, new CaptureMatcher(RegexParser.parse("(a)(b)")).getGroupCount());
+        Assert.assertEquals(2, new CaptureMatcher(RegexParser.parseCapturing("(a)(b)")).getGroupCount());
+    }
+}
@@ -0,0 +1,42 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CharClassesTest {
+    @Test
+    public void testClassesSeparateLabels() throws Exception {
+        CompiledAutomaton program = CompiledAutomaton.compile(
+                RegexParser.parse("[a-z]+\\d|[\u00e0-\u4e2d]x|.\uffff"));
+        CharClasses classes = CharClasses.of(program);
+
+        // Two characters share a class exactly when every edge treats them alike.
+        int[] representative = new int[classes.getClassCount()];
+        Arrays.fill(representative, -1);
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            int cls = classes.classOf((char) c);
+            if (representative[cls] < 0) {
+                representative[cls] = c;
+            } else {
+                for (int e = 0; e < program.getEdgeCount(); e++) {
+                    Assert.assertEquals(covers(program, e, representative[cls]), covers(program, e, c));
+                }
+            }
+        }
+        for (int cls = 0; cls < classes.getClassCount(); cls++) {
+            Assert.assertTrue(representative[cls] >= 0);
+        }
+    }
+
+    @Test
+    public void testClassCount() throws Exception {
+        Assert.assertEquals(4, new LazyDFA(RegexParser.parse("(a|b)*c"), 16).getClassCount());
+        Assert.assertEquals(2, new LazyDFA(RegexParser.parse("\\d+"), 16).getClassCount());
+    }
+
+    private static boolean covers(CompiledAutomaton program, int edge, int c) {
+        return program.edgeLo[edge] <= c && c <= program.edgeHi[edge];
+    }
+}
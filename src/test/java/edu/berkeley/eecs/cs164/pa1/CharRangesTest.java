@@ -0,0 +1,39 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CharRangesTest {
+    @Test
+    public void testUnionMergesAdjacentRanges() throws Exception {
+        CharRanges chars = CharRanges.of('a', 'c').union(CharRanges.of('x', 'z')).union(CharRanges.of('d', 'f'));
+
+        Assert.assertEquals(2, chars.getRangeCount());
+        Assert.assertEquals("[a-fx-z]", chars.toString());
+        Assert.assertEquals(chars, CharRanges.of('x', 'z').union(CharRanges.of('a', 'f')));
+    }
+
+    @Test
+    public void testComplement() throws Exception {
+        CharRanges chars = CharRanges.of('b', 'y').complement();
+
+        Assert.assertEquals(2, chars.getRangeCount());
+        Assert.assertTrue(chars.contains('a'));
+        Assert.assertFalse(chars.contains('m'));
+        Assert.assertTrue(chars.contains('\u4e2d'));
+        Assert.assertTrue(chars.contains(Character.MAX_VALUE));
+        Assert.assertEquals(CharRanges.of('b', 'y'), chars.complement());
+    }
+
+    @Test
+    public void testContainsOutsideAscii() throws Exception {
+        CharRanges chars = CharRanges.of('\u0100', '\u01ff').union(CharRanges.of('\u4e00', '\u4fff'));
+
+        Assert.assertFalse(chars.contains('\u00ff'));
+        Assert.assertTrue(chars.contains('\u0100'));
+        Assert.assertTrue(chars.contains('\u01ff'));
+        Assert.assertFalse(chars.contains('\u0200'));
+        Assert.assertTrue(chars.contains('\u4e2d'));
+        Assert.assertFalse(chars.contains('\u5000'));
+    }
+}
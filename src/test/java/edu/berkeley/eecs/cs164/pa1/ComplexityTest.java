@@ -0,0 +1,96 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ComplexityTest {
+    private static String blowUp(int n) {
+        StringBuilder pattern = new StringBuilder("(a|b)*a");
+        for (int i = 0; i < n; i++) {
+            pattern.append("(a|b)");
+        }
+        return pattern.toString();
+    }
+
+    @Test
+    public void testCounts() throws Exception {
+        CompiledAutomaton program = CompiledAutomaton.compile(RegexParser.parse("ab|c"));
+        Complexity complexity = Complexity.analyze(program, 100);
+
+        Assert.assertEquals(program.getStateCount(), complexity.getStates());
+        Assert.assertEquals(program.getEdgeCount(), complexity.getEdges());
+        Assert.assertEquals(program.getEpsilonEdgeCount(), complexity.getEpsilonEdges());
+        Assert.assertEquals(3, complexity.getEdges());
+        Assert.assertTrue(complexity.isDfaEstimateExact());
+        Assert.assertEquals(DFA.determinize(program, 100).getStateCount(), complexity.getDfaStateEstimate());
+    }
+
+    @Test
+    public void testNullableLoops() throws Exception {
+        Assert.assertEquals(0, Complexity.analyze(RegexParser.parse("a*b+(cd)*"), 100).getNullableLoops());
+        Assert.assertEquals(1, Complexity.analyze(RegexParser.parse("(a*)*"), 100).getNullableLoops());
+        Assert.assertEquals(2, Complexity.analyze(RegexParser.parse("(a|b?)*c(d*e*)+"), 100).getNullableLoops());
+    }
+
+    @Test
+    public void testDfaEstimate() throws Exception {
+        // The DFA has to remember the last n + 1 characters: 2^(n + 1) states, plus the
+        // start state before anything is read.
+        Complexity small = Complexity.analyze(RegexParser.parse(blowUp(3)), 100);
+        Assert.assertTrue(small.isDfaEstimateExact());
+        Assert.assertEquals(17, small.getDfaStateEstimate());
+
+        Complexity large = Complexity.analyze(RegexParser.parse(blowUp(12)), 100);
+        Assert.assertFalse(large.isDfaEstimateExact());
+        Assert.assertEquals(100, large.getDfaStateEstimate());
+    }
+
+    @Test
+    public void testBudgetRejects() throws Exception {
+        ComplexityBudget budget = new ComplexityBudget(50, 200, 100);
+        try {
+            budget.compile("abcdefghijklmnopqrstuvwxyz");
+            Assert.fail("Expected rejection");
+        } catch (PatternTooComplexException e) {
+            Assert.assertTrue(e.getComplexity().getStates() > 50);
+        }
+        try {
+            budget.compile("a{100}");
+            Assert.fail("Expected rejection");
+        } catch (RegexParseException e) {
+            // The repetition limit follows the state budget.
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBudgetRejectsWhileParsing() throws Exception {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            pattern.append("a{4999}");
+        }
+        try {
+            ComplexityBudget.DEFAULT.compile(pattern.toString());
+            Assert.fail("Expected rejection");
+        } catch (PatternTooComplexException e) {
+            Assert.assertFalse(e.getComplexity().isComplete());
+            Assert.assertTrue(e.getComplexity().getStates() > ComplexityBudget.DEFAULT.getMaxStates());
+            // Parsing stopped at the first state over budget.
+            Assert.assertTrue(e.getComplexity().getStates() <= 2 * ComplexityBudget.DEFAULT.getMaxStates());
+        }
+    }
+
+    @Test
+    public void testBudgetDowngrades() throws Exception {
+        ComplexityBudget budget = new ComplexityBudget(1000, 4000, 100);
+
+        Complexity small = budget.check(RegexParser.parse(blowUp(3)));
+        Assert.assertTrue(budget.allowsDfa(small));
+        Complexity large = budget.check(RegexParser.parse(blowUp(12)));
+        Assert.assertFalse(budget.allowsDfa(large));
+
+        NFASimulator simulator = budget.compile(blowUp(12));
+        Assert.assertTrue(simulator.matches("babbbbbbbbbbbb"));
+        Assert.assertTrue(simulator.matches("aaaaaaaaaaaaa"));
+        Assert.assertFalse(simulator.matches("baaaaaaaaaaaa"));
+    }
+}
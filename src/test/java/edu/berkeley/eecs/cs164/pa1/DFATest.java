@@ -0,0 +1,115 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DFATest {
+    private static void assertSameLanguage(String regex, DFA dfa) {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse(regex));
+        Random random = new Random(regex.hashCode());
+        for (int i = 0; i < 500; i++) {
+            char[] chars = new char[random.nextInt(12)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = "abcd".charAt(random.nextInt(4));
+            }
+            String text = new String(chars);
+            Assert.assertEquals(regex + " on " + text, simulator.matches(text), dfa.matches(text));
+        }
+    }
+
+    @Test
+    public void testMinimize() throws Exception {
+        String regex = "(a|b)*abb";
+        DFA dfa = DFA.determinize(RegexParser.parse(regex), 1000);
+        DFA minimal = dfa.minimize();
+
+        Assert.assertEquals(4, minimal.getStateCount());
+        assertSameLanguage(regex, dfa);
+        assertSameLanguage(regex, minimal);
+    }
+
+    @Test
+    public void testMinimizeMergesEquivalentBranches() throws Exception {
+        String regex = "(ab|cb|db)*(a|c)?";
+        DFA minimal = DFA.determinize(RegexParser.parse(regex), 1000).minimize();
+
+        Assert.assertEquals(3, minimal.getStateCount());
+        Assert.assertEquals(5, minimal.getClasses().getClassCount());
+        assertSameLanguage(regex, minimal);
+    }
+
+    @Test
+    public void testCharacterClasses() throws Exception {
+        String regex = "[a-c]*d|[^b]";
+        DFA minimal = DFA.determinize(RegexParser.parse(regex), 1000).minimize();
+
+        assertSameLanguage(regex, minimal);
+        Assert.assertTrue(minimal.matches("\u4e2d"));
+        Assert.assertFalse(minimal.matches("\u4e2dd"));
+    }
+
+    @Test
+    public void testEmptyLanguage() throws Exception {
+        Automaton a = RegexParser.parse("a");
+        DFA dfa = DFA.determinize(new Automaton(a.getStart(), new AutomatonState()), 10).minimize();
+
+        Assert.assertEquals(1, dfa.getStateCount());
+        Assert.assertFalse(dfa.matches(""));
+        Assert.assertFalse(dfa.matches("a"));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        String regex = "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)(a|b)c?";
+        DFA dfa = DFA.determinize(RegexParser.parse(regex), 10000).minimize();
+        Assert.assertTrue(dfa.getStateCount() > 255);
+
+        ByteBuffer buffer = ByteBuffer.wrap(dfa.toByteArray());
+        DFA read = DFA.read(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(dfa.getStateCount(), read.getStateCount());
+        assertSameLanguage(regex, read);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStateLimit() throws Exception {
+        DFA.determinize(RegexParser.parse("(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)"), 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsGarbage() throws Exception {
+        DFA.read(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+    }
+
+    @Test
+    public void testRejectsCorruptCounts() throws Exception {
+        DFA dfa = DFA.determinize(RegexParser.parse("a(b|c)*d"), 100);
+        byte[] bytes = dfa.toByteArray();
+        int header = 4 + dfa.getClasses().serializedSize();
+
+        assertRejected(Arrays.copyOf(bytes, bytes.length - 1));
+        assertRejected(withInt(bytes, 4, -1));
+        assertRejected(withInt(bytes, 8, Integer.MAX_VALUE));
+        assertRejected(withInt(bytes, header, Integer.MAX_VALUE));
+        assertRejected(withInt(bytes, header, 1 << 20));
+    }
+
+    private static byte[] withInt(byte[] bytes, int offset, int value) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        try {
+            DFA.read(ByteBuffer.wrap(bytes));
+            Assert.fail("Read a corrupt DFA");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileScannerTest {
+    private static File write(String contents) throws IOException {
+        File file = File.createTempFile("scan", ".log");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static List<Long> offsets(FileScanner scanner, File file) throws IOException {
+        final List<Long> offsets = new ArrayList<Long>();
+        scanner.scan(file, new FileScanner.MatchListener() {
+            public void lineMatched(long offset, int length) {
+                offsets.add(offset);
+            }
+        });
+        return offsets;
+    }
+
+    @Test
+    public void testAsciiLines() throws Exception {
+        File file = write("ab\nabab\r\nba\n\nab");
+        FileScanner scanner = new FileScanner("(ab)+");
+
+        Assert.assertEquals(3, scanner.count(file));
+        Assert.assertEquals("[0, 3, 13]", offsets(scanner, file).toString());
+        Assert.assertEquals(1, new FileScanner("(ab)*").count(write("\n")));
+        Assert.assertEquals(0, scanner.count(write("")));
+    }
+
+    @Test
+    public void testNonAsciiBytesNeverMatchAsciiPattern() throws Exception {
+        File file = write("a\u00e9\nab\n");
+
+        Assert.assertEquals("[4]", offsets(new FileScanner("a(b|\\n)"), file).toString());
+    }
+
+    @Test
+    public void testDecodedLines() throws Exception {
+        File file = write("\u00e9t\u00e9\n\u00e9t\u00e9t\u00e9\nete\n");
+
+        Assert.assertEquals("[0, 6]", offsets(new FileScanner("\u00e9(t\u00e9)+"), file).toString());
+    }
+
+    @Test
+    public void testRequiredLiteralSkipsLines() throws Exception {
+        File file = write("GET /api/users 200\nPOST /api/users 201\nGET /home 200\r\n"
+                + "GET /api/x 500\nxGET /api/ok 200\nGET /api/\u00e9 200\r\nGET /api/last 200");
+        FileScanner scanner = new FileScanner("GET /api/[a-z\u00e9]+ 200");
+
+        Assert.assertEquals("[0, 86, 103]", offsets(scanner, file).toString());
+    }
+}
@@ -0,0 +1,65 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FindTest {
+    private static NFASimulator simulator(String regex) {
+        return new NFASimulator(RegexParser.parse(regex));
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        Assert.assertEquals(new Match(3, 6), simulator("abc").find("xxxabcxx"));
+        Assert.assertEquals(new Match(2, 5), simulator("[0-9]+").find("ab123cd45"));
+        Assert.assertNull(simulator("abc").find("ababab"));
+        Assert.assertNull(simulator("abc").find(""));
+    }
+
+    @Test
+    public void testLeftmostLongest() throws Exception {
+        // A later match that completes first must not hide an earlier start.
+        Assert.assertEquals(new Match(0, 4), simulator("abcd|c").find("abcd"));
+        Assert.assertEquals(new Match(1, 4), simulator("a|ab|abc").find("xabcx"));
+        Assert.assertEquals(new Match(0, 5), simulator("(a|b)*b").find("abbabx"));
+        Assert.assertEquals(new Match(2, 4), simulator("aab|ab").find("bbabaab"));
+    }
+
+    @Test
+    public void testFindFrom() throws Exception {
+        NFAMatcher matcher = simulator("ab").matcher();
+
+        Assert.assertEquals(new Match(4, 6), matcher.find("ab  ab", 1));
+        Assert.assertNull(matcher.find("ab  ab", 5));
+        Assert.assertTrue(matcher.matches("ab"));
+    }
+
+    @Test
+    public void testFindAll() throws Exception {
+        Assert.assertEquals("[[0, 3), [4, 6), [9, 10)]",
+                simulator("\\d+").findAll("123 45 x 6").toString());
+        Assert.assertEquals("[[0, 0), [1, 4), [4, 4)]", simulator("a*").findAll("baaa").toString());
+        Assert.assertEquals("[]", simulator("z").findAll("abc").toString());
+        Assert.assertEquals("[[0, 2), [2, 4)]", simulator("aa").findAll("aaaaa").toString());
+    }
+
+    @Test
+    public void testFindIsLinear() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            text.append('a');
+        }
+        String regex = "a{1,20}b";
+        Assert.assertNull(simulator(regex).find(text));
+        Assert.assertEquals(new Match(99980, 100001), simulator(regex).find(text + "b"));
+    }
+
+    @Test
+    public void testFindWithLiterals() throws Exception {
+        String log = "12 INFO ok\n34 ERROR disk\n56 ERROR\n78 ERROR net\n";
+
+        Assert.assertEquals("[[14, 24), [37, 46)]", simulator("ERROR [a-z]+").findAll(log).toString());
+        Assert.assertEquals("[[11, 24), [34, 46)]", simulator("\\d+ ERROR [a-z]+").findAll(log).toString());
+        Assert.assertNull(simulator("\\d+ WARN").find(log));
+    }
+}
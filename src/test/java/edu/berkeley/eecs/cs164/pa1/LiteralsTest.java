@@ -0,0 +1,57 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+public class LiteralsTest {
+    private static Literals literals(String regex) {
+        return CompiledAutomaton.compile(RegexParser.parse(regex)).getLiterals();
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        Assert.assertEquals("ERROR: ", literals("ERROR: [a-z]+").getPrefix());
+        Assert.assertEquals("abc", literals("a(bc)+d").getPrefix());
+        Assert.assertEquals("abc", literals("a(bc)+d").getRequired());
+        Assert.assertEquals("", literals("ab|cd").getPrefix());
+        Assert.assertEquals("", literals("a*b").getPrefix());
+        Assert.assertEquals("", literals("").getPrefix());
+    }
+
+    @Test
+    public void testRequired() throws Exception {
+        Literals literals = literals("\\d+ ERROR \\w*");
+
+        Assert.assertEquals("", literals.getPrefix());
+        Assert.assertEquals(" ERROR ", literals.getRequired());
+        Assert.assertEquals(" /api", literals("(GET|HEAD) /api(/[a-z]+)*").getRequired());
+        Assert.assertEquals("x", literals("(a|b)x(c|d)").getRequired());
+        Assert.assertEquals("", literals("a|b").getRequired());
+        Assert.assertNull(literals("[a-z]+").getRequiredSearcher());
+    }
+
+    @Test
+    public void testSearchChars() throws Exception {
+        LiteralSearcher searcher = new LiteralSearcher("abca");
+
+        Assert.assertEquals(0, searcher.indexOf("abcabca", 0));
+        Assert.assertEquals(3, searcher.indexOf("abcabca", 1));
+        Assert.assertEquals(-1, searcher.indexOf("abcabca", 4));
+        Assert.assertEquals(-1, searcher.indexOf("abc", 0));
+        // \u0161 and \u0261 share their low byte with 'a'.
+        Assert.assertEquals(4, new LiteralSearcher("\u0161a").indexOf("\u0261aaa\u0161a", 0));
+    }
+
+    @Test
+    public void testSearchBytes() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap("x\u00e9t\u00e9 ete \u00e9t\u00e9".getBytes(Charset.forName("UTF-8")));
+        LiteralSearcher searcher = new LiteralSearcher("\u00e9t\u00e9");
+
+        Assert.assertEquals(1, searcher.indexOf(buffer, 0, buffer.limit()));
+        Assert.assertEquals(11, searcher.indexOf(buffer, 2, buffer.limit()));
+        Assert.assertEquals(-1, searcher.indexOf(buffer, 2, buffer.limit() - 1));
+    }
+}
@@ -0,0 +1,110 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import java.lang.management.ManagementFactory;
+
+public class MatchMetricsTest {
+    @Test
+    public void testNfaMetrics() throws Exception {
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("a*b"), 0, metrics);
+
+        Assert.assertTrue(simulator.matches("aab"));
+        Assert.assertFalse(simulator.matches("ba"));
+
+        Assert.assertEquals(2, metrics.getMatchCount());
+        Assert.assertEquals(5, metrics.getCharacterCount());
+        Assert.assertTrue(metrics.getPeakActiveStates() > 1);
+        Assert.assertTrue(metrics.getActiveStateTotal() >= metrics.getPeakActiveStates());
+        Assert.assertTrue(metrics.getClosureWork() > 0);
+        Assert.assertEquals(0, metrics.getCacheHits() + metrics.getCacheMisses());
+        Assert.assertTrue(metrics.getMaxMatchNanos() > 0);
+    }
+
+    @Test
+    public void testClosureWorkCountsEpsilonEdges() throws Exception {
+        // a? has an in state with epsilon edges to the a branch and to the out state.
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        Automaton nfa = RegexParser.parse("a?");
+        int epsilons = CompiledAutomaton.compile(nfa).getEpsilonEdgeCount();
+
+        Assert.assertTrue(new NFASimulator(nfa, 0, metrics).matches(""));
+        Assert.assertTrue(metrics.getClosureWork() > 0);
+        Assert.assertTrue(metrics.getClosureWork() <= epsilons);
+    }
+
+    @Test
+    public void testCompiledClosureWorkWithoutBitsets() throws Exception {
+        // Too many states for precomputed closures, so every step walks epsilon edges.
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            pattern.append("a?");
+        }
+        Automaton nfa = RegexParser.parse(pattern.toString());
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        NFASimulator simulator = new NFASimulator(nfa, 0, metrics);
+        Assert.assertFalse(simulator.getProgram().hasClosureBitsets());
+
+        Assert.assertTrue(simulator.matchesCompiled("aaa"));
+        Assert.assertTrue(metrics.getClosureWork() > 0);
+
+        JmxMatchMetrics small = new JmxMatchMetrics();
+        Assert.assertTrue(new NFASimulator(RegexParser.parse("a?a?"), 0, small).matchesCompiled("a"));
+        Assert.assertEquals(0, small.getClosureWork());
+    }
+
+    @Test
+    public void testEveryEntryPointReports() throws Exception {
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("a*b"), 0, metrics);
+
+        Assert.assertTrue(simulator.matchesCompiled("aab"));
+        Assert.assertEquals(1, metrics.getMatchCount());
+        Assert.assertEquals(3, metrics.getCharacterCount());
+        Assert.assertTrue(metrics.getPeakActiveStates() > 0);
+
+        Assert.assertTrue(simulator.matcher().matches("ab"));
+        Assert.assertEquals(2, metrics.getMatchCount());
+        Assert.assertEquals(5, metrics.getCharacterCount());
+
+        Assert.assertEquals(new Match(1, 3), simulator.find("cab"));
+        Assert.assertEquals(3, metrics.getMatchCount());
+        Assert.assertEquals(2, simulator.findAll("ab ab").size());
+        Assert.assertTrue(metrics.getMatchCount() > 3);
+        Assert.assertTrue(metrics.getClosureWork() > 0);
+    }
+
+    @Test
+    public void testCacheMetrics() throws Exception {
+        JmxMatchMetrics metrics = new JmxMatchMetrics();
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("(a|b)*c"), 2, metrics);
+
+        Assert.assertTrue(simulator.matches("ababc"));
+        Assert.assertTrue(simulator.matches("ababc"));
+
+        Assert.assertEquals(10, metrics.getCacheHits() + metrics.getCacheMisses());
+        Assert.assertTrue(metrics.getCacheHits() > 0);
+        Assert.assertTrue(metrics.getCacheFlushes() > 0);
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getMatchCount());
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        JmxMatchMetrics metrics = JmxMatchMetrics.register("x+y");
+        try {
+            new NFASimulator(RegexParser.parse("x+y"), 0, metrics).matches("xxy");
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(1L, server.getAttribute(metrics.getName(), "MatchCount"));
+            Assert.assertEquals(3L, server.getAttribute(metrics.getName(), "CharacterCount"));
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertNull(metrics.getName());
+    }
+}
@@ -0,0 +1,92 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+public class NFAMatcherTest {
+    private static NFAMatcher matcher(String regex) {
+        return new NFASimulator(RegexParser.parse(regex)).matcher();
+    }
+
+    @Test
+    public void testFeedChunks() throws Exception {
+        NFAMatcher matcher = matcher("a(bc)*d");
+        char[] chars = "xxabcbcdxx".toCharArray();
+
+        Assert.assertFalse(matcher.isAccepted());
+        Assert.assertTrue(matcher.feed(chars, 2, 3));
+        Assert.assertFalse(matcher.isAccepted());
+        Assert.assertTrue(matcher.feed(CharBuffer.wrap(chars, 5, 2)));
+        Assert.assertTrue(matcher.feed('d'));
+        Assert.assertTrue(matcher.isAccepted());
+        Assert.assertFalse(matcher.feed("d"));
+        Assert.assertFalse(matcher.isAccepted());
+
+        matcher.reset();
+        Assert.assertTrue(matcher.feed("ad"));
+        Assert.assertTrue(matcher.isAccepted());
+    }
+
+    @Test
+    public void testStopsWhenDead() throws Exception {
+        NFAMatcher matcher = matcher("ab*");
+        CharBuffer buffer = CharBuffer.wrap("abbxbbbb");
+
+        Assert.assertFalse(matcher.feed(buffer));
+        Assert.assertFalse(matcher.canAccept());
+        Assert.assertEquals(4, buffer.position());
+    }
+
+    @Test
+    public void testCanAccept() throws Exception {
+        NFAMatcher matcher = matcher("abc|abd");
+
+        Assert.assertTrue(matcher.feed("ab"));
+        Assert.assertTrue(matcher.canAccept());
+        Assert.assertFalse(matcher.isAccepted());
+        Assert.assertFalse(matcher.feed("e"));
+    }
+
+    @Test
+    public void testFeedReader() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            input.append("ab");
+        }
+        NFAMatcher matcher = matcher("(ab)*");
+
+        Assert.assertTrue(matcher.feed(new StringReader(input.toString())));
+        Assert.assertTrue(matcher.isAccepted());
+
+        matcher.reset();
+        Reader reader = new StringReader("b" + input);
+        Assert.assertFalse(matcher.feed(reader));
+        Assert.assertTrue(reader.read() >= 0);
+    }
+
+    @Test
+    public void testFeedChannel() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append("\u00e9\u4e2d");
+        }
+        Charset utf8 = Charset.forName("UTF-8");
+        NFAMatcher matcher = matcher("(\u00e9\u4e2d)+");
+
+        byte[] bytes = input.toString().getBytes(utf8);
+        Assert.assertTrue(matcher.feed(Channels.newChannel(new ByteArrayInputStream(bytes)), utf8.newDecoder()));
+        Assert.assertTrue(matcher.isAccepted());
+
+        matcher.reset();
+        bytes = (input + "\u00e9").getBytes(utf8);
+        matcher.feed(Channels.newChannel(new ByteArrayInputStream(bytes)), utf8.newDecoder());
+        Assert.assertFalse(matcher.isAccepted());
+    }
+}
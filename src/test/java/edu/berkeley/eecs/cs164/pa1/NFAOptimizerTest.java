@@ -0,0 +1,48 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NFAOptimizerTest {
+
+    @Test
+    public void testConcatenationLosesEpsilons() throws Exception {
+        NFAOptimizer optimizer = new NFAOptimizer(RegexParser.parse("abc"));
+
+        Assert.assertTrue(optimizer.getBefore().getEpsilonEdges() > 0);
+        Assert.assertEquals(4, optimizer.getAfter().getStates());
+        Assert.assertEquals(3, optimizer.getAfter().getEdges());
+        Assert.assertEquals(0, optimizer.getAfter().getEpsilonEdges());
+        Assert.assertTrue(optimizer.getResult().isFrozen());
+    }
+
+    @Test
+    public void testEquivalentStatesMerge() throws Exception {
+        // After "a" or "c" both branches expect the same "b", so they share a state.
+        NFAOptimizer optimizer = new NFAOptimizer(RegexParser.parse("(ab|cb)*d"));
+        NFASimulator simulator = new NFASimulator(optimizer.getResult());
+
+        Assert.assertEquals(3, optimizer.getAfter().getStates());
+        Assert.assertTrue(optimizer.getAfter().getStates() < optimizer.getBefore().getStates());
+        Assert.assertTrue(simulator.matches("abcbabd"));
+        Assert.assertFalse(simulator.matches("abcd"));
+    }
+
+    @Test
+    public void testNullableLoops() throws Exception {
+        NFASimulator simulator = new NFASimulator(NFAOptimizer.optimize(RegexParser.parse("(a*)*b")));
+
+        Assert.assertTrue(simulator.matches("b"));
+        Assert.assertTrue(simulator.matches("aaab"));
+        Assert.assertFalse(simulator.matches("aaa"));
+    }
+
+    @Test
+    public void testEmptyLanguage() throws Exception {
+        Automaton nfa = NFAOptimizer.optimize(RegexParser.parse("a"));
+        Automaton empty = NFAOptimizer.optimize(new Automaton(nfa.getStart(), new AutomatonState()));
+
+        Assert.assertFalse(new NFASimulator(empty).matches(""));
+        Assert.assertFalse(new NFASimulator(empty).matches("a"));
+    }
+}
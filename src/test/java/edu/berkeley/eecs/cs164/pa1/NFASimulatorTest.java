@@ -17,6 +17,11 @@ public class NFASimulatorTest {
         }
 
         Assert.assertEquals(isMatch, new NFASimulator(nfa).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa).matchesCompiled(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa).matcher().matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa, LazyDFA.DEFAULT_MAX_STATES).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa, 2).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(NFAOptimizer.optimize(nfa)).matches(text));
     }
 
     @Test
@@ -92,6 +97,62 @@ public class NFASimulatorTest {
         testCase("a(bc)?d", "abcbcd", false);
     }
 
+    @Test
+    public void testCharacterClasses() throws Exception {
+        testCase("[a-c]+", "abcba");
+        testCase("[a-c]+", "abd", false);
+        testCase("[^a-c]", "d");
+        testCase("[^a-c]", "b", false);
+        testCase("[^a-c]", "\u00e9");
+        testCase("[]a-]*", "a]-");
+        testCase("[a\\-\\]]", "]");
+        testCase("a.c", "abc");
+        testCase("a.c", "a\u4e2dc");
+        testCase("a.c", "a\nc", false);
+        testCase("\\d\\d-\\w+", "42-foo_Bar9");
+        testCase("\\d", "x", false);
+        testCase("\\s\\S", " x");
+        testCase("\\s\\S", "  ", false);
+        testCase("[\\d\\s]*", "1 2\t3");
+        testCase("\\.", ".");
+        testCase("\\.", "x", false);
+    }
+
+    @Test
+    public void testBoundedRepetition() throws Exception {
+        testCase("a{3}", "aaa");
+        testCase("a{3}", "aa", false);
+        testCase("a{3}", "aaaa", false);
+        testCase("a{2,}", "a", false);
+        testCase("a{2,}", "aa");
+        testCase("a{2,}", "aaaaaaa");
+        testCase("a{0,}", "");
+        testCase("a{2,4}", "a", false);
+        testCase("a{2,4}", "aaa");
+        testCase("a{2,4}", "aaaa");
+        testCase("a{2,4}", "aaaaa", false);
+        testCase("(ab){0,2}c", "c");
+        testCase("(ab){0,2}c", "ababc");
+        testCase("(ab){0,2}c", "abababc", false);
+        testCase("x{0}y", "y");
+        testCase("[0-9]{1,3}(\\.[0-9]{1,3}){3}", "192.168.0.1");
+        testCase("[0-9]{1,3}(\\.[0-9]{1,3}){3}", "192.168.0", false);
+        testCase("(a{2}|b){2}", "aab");
+        testCase("(a{2}|b){2}", "ab", false);
+    }
+
+    @Test
+    public void testBoundedRepetitionPerformance() throws Exception {
+        String input = "";
+        for (int n = 10; n <= 100; n += 10) {
+            input += "aaaaaaaaaa";
+            String regex = "a{" + n + "," + (2 * n) + "}";
+            testCase(regex, input);
+            testCase(regex, input + input);
+            testCase(regex, input + input + "a", false);
+        }
+    }
+
     @Test
     public void testWorstCasePerformance() throws Exception {
         String regex = "";
@@ -105,4 +166,92 @@ public class NFASimulatorTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test(timeout = 10000)
+    public void testNullableLoops() throws Exception {
+        testCase("(a*)*", "");
+        testCase("(a*)*", "aaaa");
+        testCase("(a*)*", "aab", false);
+        testCase("(a?)+", "");
+        testCase("(a?)+", "aaa");
+        testCase("(a?)+b", "b");
+        testCase("(a*|b*)*", "abba");
+        testCase("(a*|b*)*c", "abbac");
+        testCase("(a?b?)*c", "c");
+        testCase("(a?b?)*c", "babac");
+        testCase("(a?b?)*c", "bcab", false);
+        testCase("((a*)*b*)*", "aabbab");
+        testCase("((a*)+)?", "aa");
+    }
+
+    @Test(timeout = 10000)
+    public void testNestedNullableStarPerformance() throws Exception {
+        String input = "";
+        for (int n = 10; n <= 100; n += 10) {
+            String regex = "a";
+            for (int i = 0; i < n; i++) {
+                regex = i % 2 == 0 ? "(" + regex + ")*" : "((" + regex + ")?)+";
+            }
+            input += "aaaaaaaaaa";
+            testCase(regex, input);
+            testCase(regex + "b", input + "b");
+            testCase(regex, input + "b", false);
+        }
+    }
+
+    @Test
+    public void testMatcherReuse() throws Exception {
+        NFAMatcher matcher = new NFASimulator(RegexParser.parse("a(bc)*d")).matcher();
+
+        Assert.assertTrue(matcher.matches("abcbcd"));
+        Assert.assertFalse(matcher.matches("abcb"));
+        Assert.assertTrue(matcher.matches("ad"));
+        Assert.assertFalse(matcher.matches("x"));
+        Assert.assertTrue(matcher.matches("abcd"));
+    }
+
+    @Test
+    public void testCompiledWithoutClosureBitsets() throws Exception {
+        StringBuilder regex = new StringBuilder();
+        while (regex.length() < CompiledAutomaton.CLOSURE_BITSET_LIMIT) {
+            regex.append("a?b");
+        }
+        NFASimulator simulator = new NFASimulator(RegexParser.parse(regex.toString()));
+
+        Assert.assertFalse(simulator.getProgram().hasClosureBitsets());
+        Assert.assertTrue(simulator.matchesCompiled(regex.toString().replace("?", "")));
+        Assert.assertTrue(simulator.matchesCompiled(regex.toString().replace("a?", "")));
+        Assert.assertFalse(simulator.matchesCompiled(regex.toString().replace("?", "") + "b"));
+        Assert.assertTrue(simulator.matcher().matches(regex.toString().replace("?", "")));
+    }
+
+    @Test
+    public void testDfaCacheFlush() throws Exception {
+        String regex = "";
+        String input = "";
+        for (int n = 0; n < 50; n++) {
+            regex = "a?" + regex + "a";
+            input += "aa";
+        }
+        LazyDFA dfa = new LazyDFA(RegexParser.parse(regex), 16);
+
+        Assert.assertTrue(dfa.matches(input));
+        Assert.assertTrue(dfa.getStateCount() <= 16);
+        Assert.assertTrue(dfa.getFlushCount() > 0);
+        Assert.assertFalse(dfa.matches(input + "a"));
+    }
+
+    @Test
+    public void testProgramCompiledOnce() throws Exception {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("(a|b)*c"));
+        CompiledAutomaton program = simulator.getProgram();
+
+        Assert.assertSame(program, simulator.getProgram());
+        Assert.assertTrue(simulator.matchesCompiled("abc"));
+        Assert.assertSame(program, simulator.getProgram());
+
+        NFASimulator cached = new NFASimulator(RegexParser.parse("(a|b)*c"), 16);
+        Assert.assertTrue(cached.matches("abc"));
+        Assert.assertTrue(cached.matchesCompiled("abc"));
+    }
+
+}
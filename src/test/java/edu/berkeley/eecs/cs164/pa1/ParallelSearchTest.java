@@ -0,0 +1,96 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelSearchTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    // Enough threads for every entry state of the patterns below to take the parallel path.
+    private static final ForkJoinPool WIDE_POOL = new ForkJoinPool(64);
+
+    private static ParallelSearch search(String regex, int chunkSize) {
+        return new ParallelSearch(RegexParser.parse(regex), POOL, chunkSize);
+    }
+
+    @Test
+    public void testFindLines() throws Exception {
+        String text = "ab\nabab\r\nba\n\nab\naab\nab";
+        long[] expected = {0, 3, 13, 20};
+
+        for (int chunkSize = 1; chunkSize < text.length() + 2; chunkSize++) {
+            Assert.assertArrayEquals(expected, search("(ab)+", chunkSize).findLines(text));
+        }
+    }
+
+    @Test
+    public void testFindLinesInFile() throws Exception {
+        String text = "ab\nabab\r\nba\n\nab\naab\nab";
+        File file = File.createTempFile("parallel", ".log");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        long[] expected = {0, 3, 13, 20};
+
+        for (int chunkSize = 1; chunkSize < text.length() + 2; chunkSize++) {
+            Assert.assertArrayEquals(expected, search("(ab)+", chunkSize).findLines(file));
+        }
+    }
+
+    @Test
+    public void testMatchesAcrossChunks() throws Exception {
+        String regex = "(a|b)*abb(a|b)*c";
+        Random random = new Random(164);
+        for (int i = 0; i < 200; i++) {
+            char[] chars = new char[random.nextInt(60)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = "abc".charAt(random.nextInt(3));
+            }
+            String text = new String(chars);
+            boolean expected = new NFASimulator(RegexParser.parse(regex)).matches(text);
+
+            Assert.assertEquals(text, expected, search(regex, 1 + random.nextInt(8)).matches(text));
+            ParallelSearch wide = new ParallelSearch(RegexParser.parse(regex), WIDE_POOL, 1 + random.nextInt(8));
+            Assert.assertEquals(text, expected, wide.matches(text));
+        }
+    }
+
+    @Test
+    public void testMatchesWithConvergingEntryStates() throws Exception {
+        String regex = "(a|b|c|d|e|f|g|h)*(abcdefgh|bcdefgha|cdefghab)(a|b|c|d|e|f|g|h)*";
+        Random random = new Random(61);
+        for (int i = 0; i < 50; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(400); j > 0; j--) {
+                text.append("abcdefghi".charAt(random.nextInt(i % 2 == 0 ? 8 : 9)));
+            }
+            if (random.nextBoolean()) {
+                text.insert(random.nextInt(text.length() + 1), "cdefghab");
+            }
+            boolean expected = new NFASimulator(RegexParser.parse(regex)).matches(text);
+
+            Assert.assertEquals(expected, new ParallelSearch(RegexParser.parse(regex), WIDE_POOL, 16).matches(text));
+            Assert.assertEquals(expected, search(regex, 16).matches(text));
+        }
+    }
+
+    @Test
+    public void testMatchesLongInput() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'a');
+        String text = new String(chars);
+
+        Assert.assertTrue(search("(aa)*", 4096).matches(text));
+        Assert.assertFalse(search("(aa)*", 4096).matches(text + "a"));
+        Assert.assertFalse(search("(aa)*b", 4096).matches(text));
+    }
+}
@@ -0,0 +1,126 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class PatternCacheTest {
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        PatternCache cache = PatternCache.withMaxEntries(10);
+        Automaton nfa = cache.get("a(bc)*d");
+
+        Assert.assertSame(nfa, cache.get("a(bc)*d"));
+        Assert.assertTrue(new NFASimulator(cache.get("a(bc)*d")).matches("abcd"));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        PatternCache cache = PatternCache.withMaxEntries(2);
+        Automaton a = cache.get("a");
+        cache.get("b");
+        Assert.assertSame(a, cache.get("a"));
+        cache.get("c");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertSame(a, cache.get("a"));
+        cache.get("b");
+        Assert.assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedByStates() throws Exception {
+        PatternCache cache = PatternCache.withMaxStates(40);
+        int states = CompiledAutomaton.compile(cache.get("abcdefgh")).getStateCount();
+        Assert.assertEquals(states, cache.getWeight());
+
+        cache.get("ijklmnop");
+        cache.get("qrstuvwx");
+        Assert.assertTrue(cache.getWeight() <= 40);
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testOversizedPatternIsNotKept() throws Exception {
+        PatternCache cache = PatternCache.withMaxStates(1000);
+        for (int i = 0; i < 10; i++) {
+            cache.get("ab" + i);
+        }
+        long weight = cache.getWeight();
+
+        String large = "(abcdefghij){1,100}";
+        Assert.assertTrue(new NFASimulator(cache.get(large)).matches("abcdefghij"));
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(weight, cache.getWeight());
+        Assert.assertEquals(0, cache.getEvictionCount());
+        cache.get(large);
+        Assert.assertEquals(12, cache.getMissCount());
+    }
+
+    @Test
+    public void testClosuresCountOnceCompiled() throws Exception {
+        PatternCache cache = PatternCache.withMaxStates(100000);
+        Automaton nfa = cache.get("(a|b)*c{100}");
+        int states = CompiledAutomaton.compile(nfa).getStateCount();
+        Assert.assertEquals(states, cache.getWeight());
+
+        CompiledAutomaton program = cache.getCompiled("(a|b)*c{100}");
+        Assert.assertTrue(program.hasClosureBitsets());
+        Assert.assertSame(program, cache.getCompiled("(a|b)*c{100}"));
+        Assert.assertEquals(states + (long) states * ((states + 63) / 64), cache.getWeight());
+    }
+
+    @Test
+    public void testOversizedClosuresAreNotKept() throws Exception {
+        PatternCache cache = PatternCache.withMaxStates(1000);
+        cache.get("xyz");
+        cache.get("(a|b)*c{100}");
+        Assert.assertEquals(2, cache.size());
+
+        Assert.assertNotNull(cache.getCompiled("(a|b)*c{100}"));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(0, cache.getEvictionCount());
+        Assert.assertEquals(CompiledAutomaton.compile(cache.get("xyz")).getStateCount(), cache.getWeight());
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testErrorsAreNotCached() throws Exception {
+        PatternCache cache = PatternCache.withMaxEntries(10);
+        try {
+            cache.get("a(b");
+        } catch (RegexParseException e) {
+            Assert.assertEquals(0, cache.size());
+        }
+        cache.get("a(b");
+    }
+
+    @Test
+    public void testConcurrentLookupsCompileOnce() throws Exception {
+        final PatternCache cache = PatternCache.withMaxEntries(100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Automaton>> results = new ArrayList<Future<Automaton>>();
+        for (int i = 0; i < 200; i++) {
+            final String pattern = "(a|b)*c" + (i % 10);
+            results.add(pool.submit(new Callable<Automaton>() {
+                public Automaton call() {
+                    return cache.get(pattern);
+                }
+            }));
+        }
+        pool.shutdown();
+        for (Future<Automaton> result : results) {
+            Assert.assertNotNull(result.get());
+        }
+
+        Assert.assertEquals(10, cache.getMissCount());
+        Assert.assertEquals(190, cache.getHitCount());
+    }
+}
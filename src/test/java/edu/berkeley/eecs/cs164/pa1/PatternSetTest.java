@@ -0,0 +1,58 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+public class PatternSetTest {
+    private static final List<String> RULES = Arrays.asList("a+b", "(ab)*", "[a-c]*d", "a{2,3}", "b.*", "");
+
+    @Test
+    public void testMatches() throws Exception {
+        PatternSet set = new PatternSet(RULES.toArray(new String[0]));
+
+        Assert.assertEquals(6, set.size());
+        Assert.assertEquals("{1, 5}", set.matches("").toString());
+        Assert.assertEquals("{0, 1}", set.matches("ab").toString());
+        Assert.assertEquals("{3}", set.matches("aaa").toString());
+        Assert.assertEquals("{2}", set.matches("abcd").toString());
+        Assert.assertEquals("{}", set.matches("x").toString());
+        Assert.assertEquals("{4}", set.matches("bxyz").toString());
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        PatternSet set = new PatternSet("ERROR", "WARN", "disk [0-9]+", "nothing");
+
+        Assert.assertEquals("{0, 2}", set.search("12:00 ERROR disk 7 full").toString());
+        Assert.assertEquals("{1}", set.search("WARN").toString());
+        Assert.assertEquals("{}", set.search("INFO disk x").toString());
+    }
+
+    @Test
+    public void testAgreesWithSeparateSimulators() throws Exception {
+        // A cap of 4 states forces the cache to flush over and over.
+        for (int cap : new int[]{4, LazyDFA.DEFAULT_MAX_STATES}) {
+            PatternSet set = new PatternSet(RULES, cap);
+            Random random = new Random(cap);
+            for (int i = 0; i < 500; i++) {
+                char[] chars = new char[random.nextInt(8)];
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = "abcdx".charAt(random.nextInt(5));
+                }
+                String text = new String(chars);
+                BitSet expected = new BitSet();
+                for (int p = 0; p < RULES.size(); p++) {
+                    if (new NFASimulator(RegexParser.parse(RULES.get(p))).matches(text)) {
+                        expected.set(p);
+                    }
+                }
+                Assert.assertEquals(text, expected, set.matches(text));
+            }
+        }
+    }
+}
@@ -3,7 +3,8 @@ package edu.berkeley.eecs.cs164.pa1;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class RegexParserTest {
 
@@ -22,4 +23,204 @@ public class RegexParserTest {
         Assert.assertNull(RegexParser.parse("a(b\\)"));
     }
 
-}
\ No newline at end of file
+    @Test(expected = RegexParseException.class)
+    public void testUnclosedCharacterClass() throws Exception {
+        Assert.assertNull(RegexParser.parse("[a-z"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testReversedRange() throws Exception {
+        Assert.assertNull(RegexParser.parse("[z-a]"));
+    }
+
+    @Test
+    public void testCharacterClassIsOneTransition() throws Exception {
+        CompiledAutomaton digit = CompiledAutomaton.compile(RegexParser.parse("\\d"));
+        CompiledAutomaton alternation = CompiledAutomaton.compile(RegexParser.parse("0|1|2|3|4|5|6|7|8|9"));
+
+        Assert.assertEquals(1, digit.getEdgeCount());
+        Assert.assertEquals(10, alternation.getEdgeCount());
+        Assert.assertTrue(alternation.getStateCount() >= 10 * digit.getStateCount());
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testRepetitionBoundsOutOfOrder() throws Exception {
+        Assert.assertNull(RegexParser.parse("a{3,2}"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testRepetitionNotClosed() throws Exception {
+        Assert.assertNull(RegexParser.parse("a{3"));
+    }
+
+    @Test
+    public void testRepetitionExpansionLimit() throws Exception {
+        Assert.assertNotNull(RegexParser.parse("(ab){10}", 100));
+        try {
+            RegexParser.parse("((ab){100}){100}", 1000);
+            Assert.fail();
+        } catch (RegexParseException e) {
+            Assert.assertTrue(e.getMessage().contains("1000"));
+        }
+        try {
+            RegexParser.parse("a{99999999999}");
+            Assert.fail();
+        } catch (RegexParseException e) {
+            Assert.assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRepetitionLimitCoversWholePattern() throws Exception {
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            pattern.append("a{1999}");
+        }
+        Assert.assertNotNull(RegexParser.parse("a{1999}"));
+        try {
+            RegexParser.parse(pattern.toString());
+            Assert.fail();
+        } catch (RegexParseException e) {
+            Assert.assertTrue(e.getMessage().contains("" + RegexParser.DEFAULT_MAX_REPEAT_STATES));
+        }
+        try {
+            RegexParser.compile(pattern.toString());
+            Assert.fail();
+        } catch (RegexParseException e) {
+            Assert.assertTrue(e.getMessage().contains("" + RegexParser.DEFAULT_MAX_REPEAT_STATES));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testParsedAutomatonIsFrozen() throws Exception {
+        Automaton nfa = RegexParser.parse("ab*");
+
+        Assert.assertTrue(nfa.isFrozen());
+        nfa.getStart().addTransition('c', nfa.getOut());
+    }
+
+    @Test
+    public void testConcurrentParsingAllocatesUniqueIds() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Automaton>> results = new ArrayList<Future<Automaton>>();
+        for (int i = 0; i < 64; i++) {
+            results.add(pool.submit(new Callable<Automaton>() {
+                public Automaton call() {
+                    return RegexParser.parse("(a|b)*c+(de)?f");
+                }
+            }));
+        }
+        pool.shutdown();
+
+        Set<Integer> ids = new HashSet<Integer>();
+        int states = 0;
+        for (Future<Automaton> result : results) {
+            Automaton nfa = result.get();
+            Assert.assertTrue(new NFASimulator(nfa).matches("abbaccdef"));
+            for (AutomatonState state : reachable(nfa.getStart())) {
+                ids.add(state.getMyId());
+                states++;
+            }
+        }
+        Assert.assertEquals(states, ids.size());
+    }
+
+    @Test
+    public void testCompileAgreesWithParse() throws Exception {
+        String[] patterns = {"", "a", "ab|c", "a|", "|b", "(a|b)*c", "a+b?", "(ab)*|c+", "()", "a(|b)c",
+                "[a-c]x", "[^a]", "\\d+\\.\\w", ".\\*", "a{2}", "a{1,3}", "(ab){2,}", "a{0}b", "(a|bc){0,2}d",
+                "((a*)*)*b", "(a|(b|(c|d)))e", "*a", "a**", "a)b", "(a))b", "a\u0000b"};
+        String[] texts = {"", "a", "b", "c", "ab", "abc", "ac", "aab", "abab", "ababab", "bx", "b", "1.x", "a*",
+                "aa", "aaa", "aaaa", "b", "bcad", "ad", "bcbcd", "aaab", "de", "ce", "x{,}", "*a", "a*", "aa*", "a)b", "a\u0000b"};
+        for (String pattern : patterns) {
+            NFAMatcher expected = new NFAMatcher(CompiledAutomaton.compile(RegexParser.parse(pattern)));
+            NFAMatcher actual = new NFAMatcher(RegexParser.compile(pattern));
+            for (String text : texts) {
+                Assert.assertEquals(pattern + " on " + text, expected.matches(text), actual.matches(text));
+            }
+        }
+    }
+
+    @Test
+    public void testCompileDeepNesting() throws Exception {
+        int depth = 100000;
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            pattern.append('(');
+        }
+        pattern.append("a|b");
+        for (int i = 0; i < depth; i++) {
+            pattern.append(")*");
+        }
+
+        NFAMatcher matcher = new NFAMatcher(RegexParser.compile(pattern.toString()));
+        Assert.assertTrue(matcher.matches("abba"));
+        Assert.assertFalse(matcher.matches("abc"));
+    }
+
+    @Test(timeout = 10000)
+    public void testCompileKeywordList() throws Exception {
+        int keywords = 50000;
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < keywords; i++) {
+            pattern.append(i == 0 ? "" : "|").append("kw").append(i);
+        }
+
+        CompiledAutomaton program = RegexParser.compile(pattern.toString());
+        // A branch of n chars costs 2n states and the alternation 2 more, not 2 per branch.
+        Assert.assertEquals(2 * (pattern.length() - (keywords - 1)) + 2, program.getStateCount());
+        NFAMatcher matcher = new NFAMatcher(program);
+        Assert.assertTrue(matcher.matches("kw0"));
+        Assert.assertTrue(matcher.matches("kw49999"));
+        Assert.assertFalse(matcher.matches("kw50000"));
+        Assert.assertFalse(matcher.matches("kw"));
+    }
+
+    @Test
+    public void testCompileErrors() throws Exception {
+        String[] invalid = {"a(b", "(a\u0000)", "[a-z", "[z-a]", "a{3,2}", "a{3", "a(b\\)"};
+        for (String pattern : invalid) {
+            try {
+                RegexParser.compile(pattern);
+                Assert.fail(pattern);
+            } catch (RegexParseException e) {
+                Assert.assertTrue(e.getMessage().contains(pattern));
+            }
+        }
+        Assert.assertNotNull(RegexParser.compile("(ab){10}", 100));
+        try {
+            RegexParser.compile("((ab){100}){100}", 1000);
+            Assert.fail();
+        } catch (RegexParseException e) {
+            Assert.assertTrue(e.getMessage().contains("1000"));
+        }
+    }
+
+    private static List<AutomatonState> reachable(AutomatonState start) {
+        Map<AutomatonState, Boolean> seen = new IdentityHashMap<AutomatonState, Boolean>();
+        Deque<AutomatonState> pending = new ArrayDeque<AutomatonState>();
+        List<AutomatonState> result = new ArrayList<AutomatonState>();
+        pending.push(start);
+        seen.put(start, true);
+        while (!pending.isEmpty()) {
+            AutomatonState state = pending.pop();
+            result.add(state);
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (seen.put(target, true) == null) {
+                        pending.push(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharRanges, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (seen.put(target, true) == null) {
+                        pending.push(target);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+}
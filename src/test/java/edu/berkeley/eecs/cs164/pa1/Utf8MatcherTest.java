@@ -0,0 +1,90 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+public class Utf8MatcherTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // One character of each encoded length, at the edges of each, and a surrogate pair.
+    private static final String[] PIECES = {
+            "a", "\n", "\u007f", "\u0080", "\u00e9", "\u07ff", "\u0800", "\u4e2d", "\ud7ff",
+            "\ue000", "\uffff", "\ud800\udc00", "\ud83d\ude00", "\ud83d\ude4f", "\udbff\udfff"
+    };
+
+    private static void testCase(String regex, String text) {
+        Automaton nfa = RegexParser.parse(regex);
+        boolean expected = new NFASimulator(nfa).matchesCompiled(text);
+        byte[] bytes = text.getBytes(UTF8);
+        Utf8Matcher matcher = new Utf8Matcher(nfa);
+
+        String message = "'" + regex + "' on '" + text + "'";
+        Assert.assertEquals(message, expected, matcher.matches(bytes, 0, bytes.length));
+        Assert.assertEquals(message, expected, matcher.matches(ByteBuffer.wrap(bytes)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.put((byte) 'x').put(bytes).put((byte) 'x');
+        direct.position(1);
+        direct.limit(1 + bytes.length);
+        Assert.assertEquals(message, expected, matcher.matches(direct));
+        Assert.assertEquals(1, direct.position());
+    }
+
+    @Test
+    public void testMatchesLikeChars() throws Exception {
+        testCase("a\u00e9\u4e2d", "a\u00e9\u4e2d");
+        testCase("a\u00e9\u4e2d", "a\u00e9\u4e2e");
+        testCase("[\u00e0-\u4e2d]+", "\u00e9\u0800\u4e2d");
+        testCase("[\u00e0-\u4e2d]+", "\u00e9\u4e2e");
+        testCase("\ud83d\ude00+", "\ud83d\ude00\ud83d\ude00");
+        testCase("..", "\ud83d\ude00");
+        testCase(".", "\ud83d\ude00");
+        testCase("[^a]*", "b\u00e9\ud83d\ude00\uffff");
+        testCase("\\W+", "\u00e9 \ud83d\ude4f");
+    }
+
+    @Test
+    public void testRandomInputs() throws Exception {
+        String[] patterns = {
+                ".*", "..", "[^a\n]+", "a.b", "[\u0080-\uffff]*", "[\u07ff-\u0800]+",
+                "[\ud800-\udbff][\udc00-\udfff]", "\ud83d[\ude00-\ude3f]", "(\u00e9|\ud83d\ude00)*a",
+                "[\ud83d\udbff][\ude00-\udfff]", "\\w*\\W"
+        };
+        Random random = new Random(164);
+        for (String pattern : patterns) {
+            for (int i = 0; i < 200; i++) {
+                StringBuilder text = new StringBuilder();
+                int length = random.nextInt(4);
+                for (int j = 0; j < length; j++) {
+                    text.append(PIECES[random.nextInt(PIECES.length)]);
+                }
+                testCase(pattern, text.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedInputNeverMatches() throws Exception {
+        Utf8Matcher matcher = new Utf8Matcher(RegexParser.parse(".*"));
+        byte[][] malformed = {
+                {(byte) 0x80}, {(byte) 0xc3}, {(byte) 0xc0, (byte) 0xaf},
+                {(byte) 0xed, (byte) 0xa0, (byte) 0x80}, {(byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80}
+        };
+        for (byte[] bytes : malformed) {
+            Assert.assertFalse(matcher.matches(bytes, 0, bytes.length));
+        }
+        Assert.assertTrue(matcher.matches(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void testAsciiIsUnchanged() throws Exception {
+        Automaton nfa = RegexParser.parse("a(b|c)*[d-f]");
+        CompiledAutomaton before = CompiledAutomaton.compile(nfa);
+        CompiledAutomaton after = CompiledAutomaton.compile(Utf8Lowering.lower(nfa));
+        Assert.assertEquals(before.getStateCount(), after.getStateCount());
+        Assert.assertEquals(before.getEdgeCount(), after.getEdgeCount());
+    }
+}